@@ -0,0 +1,74 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>ConcurrentParserBenchmark</h1>
+ * Parses schedule pages on as many threads as the model fetches with, the
+ * way an update parses its pages. freshBuilder parses the same page with a
+ * factory and builder made for every parse, as the parser used to, and
+ * doesn't depend on the engine.
+ * <p>
+ * engine - The parser engine, DOM or STAX.
+ * <p>
+ * size - The amount of programs on a page.
+ * <p>
+ * parser - The parser, shared by all threads like the model's parser.
+ * <p>
+ * schedule - A schedule page with size programs.
+ *
+ * @version 1.0
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ConcurrentParserBenchmark {
+
+    @Param({"DOM", "STAX"})
+    public String engine;
+
+    @Param({"10", "57"})
+    public int size;
+
+    private Object parser;
+    private byte[] schedule;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        parser = Radio.parser(engine);
+        schedule = Radio.scheduleXml(size);
+    }
+
+    @Benchmark
+    public Object programs() throws Throwable {
+        Object rc = Radio.channel();
+        Radio.GET_PROGRAMS_FROM_SOURCE.invokeExact(parser,
+                (Object) Radio.source(schedule), rc);
+        return rc;
+    }
+
+    @Benchmark
+    public Object freshBuilder() throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(Radio.source(schedule));
+    }
+}
@@ -0,0 +1,184 @@
+package benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <h1>FetchBenchmark</h1>
+ * Downloads the pages of a schedule update from a local stub server.
+ * urlConnection opens a stream per page like the model used to, the
+ * others go through HttpCache and its shared HttpClient, one page at a
+ * time or all pages at once with fetchAsync. The server gzips the pages
+ * when asked to and answers after latency milliseconds.
+ * <p>
+ * pages - The amount of pages in an update.
+ * <p>
+ * latency - How long the server waits before answering, in milliseconds.
+ * <p>
+ * server - The stub server.
+ * <p>
+ * serverThreads - The threads of the stub server.
+ * <p>
+ * cache - Cache in a temporary directory that downloads through the shared
+ * client.
+ * <p>
+ * address - The address of the stub server.
+ *
+ * @version 1.0
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchBenchmark {
+
+    @Param({"18"})
+    public int pages;
+
+    @Param({"0", "5"})
+    public int latency;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private File directory;
+    private Object cache;
+    private String address;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        final byte[] plain = Radio.scheduleXml(10);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        gzip.write(plain);
+        gzip.close();
+        final byte[] gzipped = bytes.toByteArray();
+
+        /*Without this the stub server's replies wait for delayed ACKs,
+         which hides every difference between the clients.*/
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if(latency > 0){
+                    try {
+                        Thread.sleep(latency);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                String accept = exchange.getRequestHeaders()
+                        .getFirst("Accept-Encoding");
+                byte[] body = plain;
+                if(accept != null && accept.contains("gzip")){
+                    body = gzipped;
+                    exchange.getResponseHeaders().add("Content-Encoding",
+                            "gzip");
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        serverThreads = Executors.newFixedThreadPool(pages);
+        server.setExecutor(serverThreads);
+        server.start();
+        address = "http://localhost:" + server.getAddress().getPort() +
+                "/scheduledepisodes?channelid=164&page=";
+        directory = Files.createTempDirectory("fetch-benchmark").toFile();
+        cache = (Object) Radio.NEW_HTTP_CACHE.invokeExact((Object) directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        server.stop(0);
+        serverThreads.shutdownNow();
+        File[] files = directory.listFiles();
+        if(files != null){
+            for(File f : files){
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public long urlConnection() throws IOException {
+        long total = 0;
+        for(int i = 1; i <= pages; i++){
+            InputStream in = new URL(address + i).openStream();
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while((read = in.read(buffer)) != -1){
+                    total += read;
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long sharedClient() throws Throwable {
+        long total = 0;
+        for(int i = 1; i <= pages; i++){
+            Object response = (Object) Radio.FETCH.invokeExact(cache,
+                    (Object) (address + i));
+            total += ((byte[]) (Object) Radio.GET_BODY.invokeExact(response))
+                    .length;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long sharedClientAsync() throws Throwable {
+        List<CompletableFuture<?>> fetches =
+                new ArrayList<CompletableFuture<?>>();
+        for(int i = 1; i <= pages; i++){
+            fetches.add((CompletableFuture<?>) (Object)
+                    Radio.FETCH_ASYNC.invokeExact(cache,
+                            (Object) (address + i)));
+        }
+        long total = 0;
+        for(CompletableFuture<?> fetch : fetches){
+            Object response = fetch.get();
+            total += ((byte[]) (Object) Radio.GET_BODY.invokeExact(response))
+                    .length;
+        }
+        return total;
+    }
+}
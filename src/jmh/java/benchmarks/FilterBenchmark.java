@@ -0,0 +1,70 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>FilterBenchmark</h1>
+ * Filters a synthetic schedule to the hours around the current time, the
+ * way an update does. Filtering removes programs, so every invocation
+ * filters a fresh channel filled from the same programs.
+ * <p>
+ * size - The amount of programs before filtering.
+ * <p>
+ * programs - The programs in start time order.
+ * <p>
+ * channel - The channel to filter, refilled before every invocation.
+ * <p>
+ * now - The current time.
+ *
+ * @version 1.0
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"57", "1000", "10000", "100000"})
+    public int size;
+
+    private Object programs;
+    private Object channel;
+    private Calendar now;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        now = Calendar.getInstance();
+        Object rc = Radio.channel(size, now.getTimeInMillis());
+        programs = (Object) Radio.SCHEDULE_TO_LIST.invokeExact(
+                (Object) Radio.GET_PROGRAMS.invokeExact(rc));
+    }
+
+    @Setup(Level.Invocation)
+    public void refill() throws Throwable {
+        channel = Radio.channel();
+        Radio.SCHEDULE_ADD_ALL.invokeExact(
+                (Object) Radio.GET_PROGRAMS.invokeExact(channel), programs);
+    }
+
+    @Benchmark
+    public Object filterRadioPrograms() throws Throwable {
+        Radio.FILTER_RADIO_PROGRAMS.invokeExact(channel, 11, (Object) now);
+        return channel;
+    }
+}
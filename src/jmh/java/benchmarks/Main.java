@@ -0,0 +1,34 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <h1>Main</h1>
+ * Runs the benchmarks like the JMH launcher, but with the gc profiler on
+ * unless other profilers are asked for, so that the allocation rate is
+ * always reported next to the throughput.
+ *
+ * @version 1.0
+ */
+
+public class Main {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if(cmd.shouldHelp() || cmd.shouldList() ||
+                cmd.shouldListWithParams() || cmd.shouldListProfilers() ||
+                cmd.shouldListResultFormats()){
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cmd);
+        if(cmd.getProfilers().isEmpty()){
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>MarkProgramBenchmark</h1>
+ * Compares marking the most recently ended program the old way, by
+ * formatting and parsing both times for every program, with the binary
+ * search in RadioChannel.markProgram.
+ * <p>
+ * size - The amount of programs in the schedule.
+ * <p>
+ * channel - A channel with size programs around the current time.
+ * <p>
+ * ends - The end times of the programs, for the old way.
+ * <p>
+ * now - The current time.
+ *
+ * @version 1.0
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkProgramBenchmark {
+
+    @Param({"57", "1000", "10000", "100000"})
+    public int size;
+
+    private Object channel;
+    private Calendar[] ends;
+    private Calendar now;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        now = Calendar.getInstance();
+        now.set(Calendar.MILLISECOND, 0);
+        channel = Radio.channel(size, now.getTimeInMillis());
+        Object programs = (Object) Radio.GET_PROGRAMS.invokeExact(channel);
+        ends = new Calendar[size];
+        for(int i = 0; i < size; i++){
+            Object rp = (Object) Radio.SCHEDULE_GET.invokeExact(programs, i);
+            ends[i] = (Calendar) (Object) Radio.GET_END_TIME.invokeExact(rp);
+        }
+    }
+
+    @Benchmark
+    public int stringRoundTrip() throws ParseException {
+        return legacyMarkProgram(ends, now);
+    }
+
+    @Benchmark
+    public int binarySearch() throws Throwable {
+        Radio.MARK_PROGRAM.invokeExact(channel, (Object) now);
+        return (int) Radio.GET_MARKED_PROGRAM.invokeExact(channel);
+    }
+
+    /**
+     * The marking as it was before the schedule was indexed, kept here to
+     * compare against.
+     * @param ends The end times of the programs in start time order.
+     * @param currentTime The current time to compare the programs to.
+     * @return The number of the most recently ended program.
+     */
+
+    private static int legacyMarkProgram(Calendar[] ends,
+                                         Calendar currentTime)
+            throws ParseException {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd | HH:mm:ss");
+        Date date1;
+        Date date2;
+        int markedProgram = 0;
+        int i = 0;
+
+        date1 = sdf.parse(currentTime.get(Calendar.YEAR) + "-" +
+                currentTime.get(Calendar.MONTH)  + "-" +
+                currentTime.get(Calendar.DAY_OF_MONTH) + " | " +
+                currentTime.get(Calendar.HOUR_OF_DAY) + ":" +
+                currentTime.get(Calendar.MINUTE) + ":" +
+                currentTime.get(Calendar.SECOND));
+        while(i < ends.length){
+            Calendar c2 = ends[i];
+            date2 = sdf.parse(c2.get(Calendar.YEAR) + "-" +
+                    c2.get(Calendar.MONTH)  + "-" +
+                    c2.get(Calendar.DAY_OF_MONTH) + " | " +
+                    c2.get(Calendar.HOUR_OF_DAY) + ":" +
+                    c2.get(Calendar.MINUTE) + ":" +
+                    c2.get(Calendar.SECOND));
+            if(date1.compareTo(date2) > 0){
+                markedProgram = i;
+            }
+            i++;
+        }
+        return markedProgram;
+    }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>ParseDatesBenchmark</h1>
+ * Parses the start and end times of a batch of programs. The score is per
+ * program.
+ * <p>
+ * programs - Programs with times spread over a year.
+ *
+ * @version 1.0
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseDatesBenchmark {
+
+    private static final int BATCH = 1024;
+
+    private Object[] programs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        SimpleDateFormat f = Radio.apiFormat();
+        programs = new Object[BATCH];
+        long start = f.parse("2017-12-10T23:00:00Z").getTime();
+        for(int i = 0; i < BATCH; i++){
+            long time = start + i * 517 * Radio.MINUTE;
+            programs[i] = Radio.program("Program " + i,
+                    f.format(new Date(time)),
+                    f.format(new Date(time + 30 * Radio.MINUTE)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseDates() throws Throwable {
+        for(Object rp : programs){
+            Radio.PARSE_DATES.invokeExact(rp);
+        }
+    }
+}
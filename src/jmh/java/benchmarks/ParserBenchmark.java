@@ -0,0 +1,76 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>ParserBenchmark</h1>
+ * Parses synthetic channel and schedule responses with both parser
+ * engines.
+ * <p>
+ * engine - The parser engine, DOM or STAX.
+ * <p>
+ * size - The amount of channels or programs in a response.
+ * <p>
+ * parser - The parser.
+ * <p>
+ * channels - A channel response with size channels.
+ * <p>
+ * schedule - A schedule response with size programs.
+ *
+ * @version 1.0
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"DOM", "STAX"})
+    public String engine;
+
+    @Param({"57", "1000", "10000", "100000"})
+    public int size;
+
+    private Object parser;
+    private byte[] channels;
+    private byte[] schedule;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        parser = Radio.parser(engine);
+        channels = Radio.channelsXml(size);
+        schedule = Radio.scheduleXml(size);
+    }
+
+    @Benchmark
+    public Object channels() throws Throwable {
+        ArrayList<Object> list = new ArrayList<Object>();
+        Radio.GET_CHANNELS.invokeExact(parser,
+                (Object) Radio.source(channels), (Object) list);
+        return list;
+    }
+
+    @Benchmark
+    public Object programs() throws Throwable {
+        Object rc = Radio.channel();
+        Radio.GET_PROGRAMS_FROM_SOURCE.invokeExact(parser,
+                (Object) Radio.source(schedule), rc);
+        return rc;
+    }
+}
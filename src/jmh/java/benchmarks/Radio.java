@@ -0,0 +1,338 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.xml.sax.InputSource;
+
+/**
+ * <h1>Radio</h1>
+ * Access to the application classes for the benchmarks. JMH doesn't accept
+ * benchmarks in the default package, and classes in a package can't name
+ * classes in the default package, so the application is reached through
+ * method handles. The handles are static final, which lets the JIT inline
+ * them like ordinary calls. Every handle takes and returns Object for the
+ * application types and has to be called with invokeExact.
+ * <p>
+ * The synthetic data is made by repeating the entries of the bundled
+ * responses in src/main/resources, so the benchmarks are run from the
+ * project directory. Image addresses are left out, since the parser would
+ * otherwise start downloading them.
+ *
+ * @version 1.0
+ */
+
+final class Radio {
+
+    static final long MINUTE = 60L * 1000;
+
+    private static final String PROGRAMS_FILE =
+            "src/main/resources/p3programsedit.xml";
+    private static final String CHANNELS_FILE =
+            "src/main/resources/channels.xml";
+    private static final Pattern EPISODE = Pattern.compile(
+            "<scheduledepisode>.*?</scheduledepisode>", Pattern.DOTALL);
+    private static final Pattern CHANNEL = Pattern.compile(
+            "<channel id=\"[^\"]*\" name=\"([^\"]*)\">.*?</channel>",
+            Pattern.DOTALL);
+    private static final Pattern START = Pattern.compile(
+            "<starttimeutc>([^<]*)</starttimeutc>");
+    private static final Pattern END = Pattern.compile(
+            "<endtimeutc>([^<]*)</endtimeutc>");
+    private static final Pattern IMAGES = Pattern.compile(
+            "\\s*<(image|imageurl)>[^<]*</\\1>");
+
+    static final MethodHandle NEW_CHANNEL;
+    static final MethodHandle NEW_PROGRAM;
+    static final MethodHandle SET_START_STRING;
+    static final MethodHandle SET_END_STRING;
+    static final MethodHandle PARSE_DATES;
+    static final MethodHandle GET_END_TIME;
+    static final MethodHandle ADD_PROGRAM;
+    static final MethodHandle GET_PROGRAMS;
+    static final MethodHandle SCHEDULE_SIZE;
+    static final MethodHandle SCHEDULE_GET;
+    static final MethodHandle SCHEDULE_ADD_ALL;
+    static final MethodHandle SCHEDULE_TO_LIST;
+    static final MethodHandle FILTER_RADIO_PROGRAMS;
+    static final MethodHandle MARK_PROGRAM;
+    static final MethodHandle GET_MARKED_PROGRAM;
+    static final MethodHandle NEW_PARSER;
+    static final MethodHandle GET_CHANNELS;
+    static final MethodHandle GET_PROGRAMS_FROM_SOURCE;
+    static final MethodHandle NEW_HTTP_CACHE;
+    static final MethodHandle FETCH;
+    static final MethodHandle FETCH_ASYNC;
+    static final MethodHandle GET_BODY;
+
+    static {
+        try {
+            Class<?> channel = Class.forName("RadioChannel");
+            Class<?> program = Class.forName("RadioProgram");
+            Class<?> schedule = Class.forName("ProgramSchedule");
+            Class<?> parser = Class.forName("XMLDataParser");
+            Class<?> engine = Class.forName("XMLDataParser$Engine");
+            Class<?> httpCache = Class.forName("HttpCache");
+            Class<?> response = Class.forName("HttpCache$Response");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            Constructor<?> c = channel.getDeclaredConstructor(String.class,
+                    String.class);
+            c.setAccessible(true);
+            NEW_CHANNEL = erase(MethodHandles.lookup().unreflectConstructor(c));
+            NEW_PROGRAM = erase(lookup.findConstructor(program,
+                    MethodType.methodType(void.class, String.class)));
+            SET_START_STRING = erase(lookup.findVirtual(program,
+                    "setStartString",
+                    MethodType.methodType(void.class, String.class)));
+            SET_END_STRING = erase(lookup.findVirtual(program, "setEndString",
+                    MethodType.methodType(void.class, String.class)));
+            PARSE_DATES = erase(lookup.findVirtual(program, "parseDates",
+                    MethodType.methodType(void.class)));
+            GET_END_TIME = erase(lookup.findVirtual(program, "getEndTime",
+                    MethodType.methodType(Calendar.class)));
+            ADD_PROGRAM = erase(lookup.findVirtual(channel, "addProgram",
+                    MethodType.methodType(void.class, program)));
+            GET_PROGRAMS = erase(lookup.findVirtual(channel, "getPrograms",
+                    MethodType.methodType(schedule)));
+            SCHEDULE_SIZE = erase(lookup.findVirtual(schedule, "size",
+                    MethodType.methodType(int.class)));
+            SCHEDULE_GET = erase(lookup.findVirtual(schedule, "get",
+                    MethodType.methodType(program, int.class)));
+            SCHEDULE_ADD_ALL = erase(lookup.findVirtual(schedule, "addAll",
+                    MethodType.methodType(void.class, Collection.class)));
+            SCHEDULE_TO_LIST = erase(lookup.findVirtual(schedule, "toList",
+                    MethodType.methodType(ArrayList.class)));
+            FILTER_RADIO_PROGRAMS = erase(lookup.findVirtual(channel,
+                    "filterRadioPrograms", MethodType.methodType(void.class,
+                            int.class, Calendar.class)));
+            MARK_PROGRAM = erase(lookup.findVirtual(channel, "markProgram",
+                    MethodType.methodType(void.class, Calendar.class)));
+            GET_MARKED_PROGRAM = erase(lookup.findVirtual(channel,
+                    "getMarkedProgram", MethodType.methodType(int.class)));
+            NEW_PARSER = erase(lookup.findConstructor(parser,
+                    MethodType.methodType(void.class, engine)));
+            GET_CHANNELS = erase(lookup.findVirtual(parser,
+                    "getRadioChannelsFromSource", MethodType.methodType(
+                            void.class, InputSource.class, List.class)));
+            GET_PROGRAMS_FROM_SOURCE = erase(lookup.findVirtual(parser,
+                    "getRadioProgramsFromSource", MethodType.methodType(
+                            void.class, InputSource.class, channel)));
+            NEW_HTTP_CACHE = erase(lookup.findConstructor(httpCache,
+                    MethodType.methodType(void.class, File.class)));
+            FETCH = erase(lookup.findVirtual(httpCache, "fetch",
+                    MethodType.methodType(response, String.class)));
+            FETCH_ASYNC = erase(lookup.findVirtual(httpCache, "fetchAsync",
+                    MethodType.methodType(CompletableFuture.class,
+                            String.class)));
+            GET_BODY = erase(lookup.findVirtual(response, "getBody",
+                    MethodType.methodType(byte[].class)));
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Radio(){
+    }
+
+    /**
+     * Turns every reference type of a handle into Object.
+     * @param h The handle.
+     * @return The same handle with erased types.
+     */
+
+    private static MethodHandle erase(MethodHandle h){
+        return h.asType(h.type().erase());
+    }
+
+    /**
+     * Makes a parser.
+     * @param engine The name of the parser engine, DOM or STAX.
+     * @return The parser.
+     */
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object parser(String engine) throws Throwable {
+        Class<? extends Enum> type = (Class<? extends Enum>)
+                Class.forName("XMLDataParser$Engine");
+        return (Object) NEW_PARSER.invokeExact(
+                (Object) Enum.valueOf(type, engine));
+    }
+
+    /**
+     * Makes an empty channel.
+     * @return The channel.
+     */
+
+    static Object channel() throws Throwable {
+        return (Object) NEW_CHANNEL.invokeExact((Object) "P3",
+                (Object) "164");
+    }
+
+    /**
+     * Wraps bytes in a new source for the parser.
+     * @param xml The XML.
+     * @return The source.
+     */
+
+    static InputSource source(byte[] xml){
+        return new InputSource(new ByteArrayInputStream(xml));
+    }
+
+    /**
+     * Makes a schedule response by repeating the episodes of the bundled
+     * schedule, moving every copy so that the programs follow each other.
+     * @param size The amount of programs.
+     * @return The response.
+     */
+
+    static byte[] scheduleXml(int size) throws IOException, ParseException {
+        String file = read(PROGRAMS_FILE);
+        List<String> episodes = new ArrayList<String>();
+        Matcher m = EPISODE.matcher(file);
+        while(m.find()){
+            episodes.add(IMAGES.matcher(m.group()).replaceAll(""));
+        }
+
+        SimpleDateFormat f = apiFormat();
+        StringBuilder sb = new StringBuilder("<sr><schedule>");
+        long start = f.parse(first(START, episodes.get(0))).getTime();
+        for(int i = 0; i < size; i++){
+            String episode = episodes.get(i % episodes.size());
+            long length = f.parse(first(END, episode)).getTime() -
+                    f.parse(first(START, episode)).getTime();
+            String copy = START.matcher(episode).replaceFirst(
+                    "<starttimeutc>" + f.format(new Date(start)) +
+                            "</starttimeutc>");
+            start += length;
+            sb.append(END.matcher(copy).replaceFirst(
+                    "<endtimeutc>" + f.format(new Date(start)) +
+                            "</endtimeutc>"));
+        }
+        return sb.append("</schedule></sr>").toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes a channel response by repeating the channels of the bundled
+     * channel list with new ids and names.
+     * @param size The amount of channels.
+     * @return The response.
+     */
+
+    static byte[] channelsXml(int size) throws IOException {
+        String file = read(CHANNELS_FILE);
+        List<String> channels = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        Matcher m = CHANNEL.matcher(file);
+        while(m.find()){
+            String channel = IMAGES.matcher(m.group()).replaceAll("");
+            channels.add(channel.substring(channel.indexOf('>') + 1));
+            names.add(m.group(1));
+        }
+
+        StringBuilder sb = new StringBuilder("<sr><channels>");
+        for(int i = 0; i < size; i++){
+            int j = i % channels.size();
+            sb.append("<channel id=\"").append(i).append("\" name=\"")
+                    .append(names.get(j)).append(' ').append(i).append("\">")
+                    .append(channels.get(j));
+        }
+        return sb.append("</channels></sr>").toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(String file) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(file)),
+                StandardCharsets.UTF_8);
+    }
+
+    private static String first(Pattern p, String s){
+        Matcher m = p.matcher(s);
+        if(!m.find()){
+            throw new IllegalArgumentException("Missing " + p + " in " + s);
+        }
+        return m.group(1);
+    }
+
+    /**
+     * Makes a formatter for the API's time strings.
+     * @return A formatter for yyyy-MM-ddTHH:mm:ssZ in UTC.
+     */
+
+    static SimpleDateFormat apiFormat(){
+        SimpleDateFormat f = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return f;
+    }
+
+    /**
+     * Makes a channel with back to back programs of 2 to 30 minutes,
+     * centered on a time.
+     * @param size The amount of programs.
+     * @param middle The time the middle program starts at, in milliseconds.
+     * @return The channel.
+     */
+
+    static Object channel(int size, long middle) throws Throwable {
+        Object rc = channel();
+        SimpleDateFormat f = apiFormat();
+        long start = middle;
+        for(int i = 0; i < size / 2; i++){
+            start -= length(i);
+        }
+        for(int i = 0; i < size; i++){
+            long end = start + length(i + size / 2);
+            Object rp = program("Program " + i, f.format(new Date(start)),
+                    f.format(new Date(end)));
+            PARSE_DATES.invokeExact(rp);
+            ADD_PROGRAM.invokeExact(rc, rp);
+            start = end;
+        }
+        return rc;
+    }
+
+    /**
+     * Makes a program without parsing its times.
+     * @param name The name of the program.
+     * @param start The start time as the API sends it.
+     * @param end The end time as the API sends it.
+     * @return The program.
+     */
+
+    static Object program(String name, String start, String end)
+            throws Throwable {
+        Object rp = (Object) NEW_PROGRAM.invokeExact((Object) name);
+        SET_START_STRING.invokeExact(rp, (Object) start);
+        SET_END_STRING.invokeExact(rp, (Object) end);
+        return rp;
+    }
+
+    /**
+     * The length of a synthetic program, repeating every 15 programs.
+     * @param i The number of the program.
+     * @return The length in milliseconds.
+     */
+
+    private static long length(int i){
+        return (2 + (i % 15) * 2) * MINUTE;
+    }
+}
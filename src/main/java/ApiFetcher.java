@@ -0,0 +1,389 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * <h1>ApiFetcher</h1>
+ * Fetch layer between the model and the HTTP cache that keeps a slow or
+ * failing server from taking the program down. Failed downloads are
+ * retried a few times with growing, randomized pauses. Every endpoint has
+ * a circuit breaker that stops calls to it after repeated failures, and
+ * when an endpoint can't be reached the last cached response is served
+ * instead, marked as stale. Latency and errors are counted per endpoint.
+ * <p>
+ * httpCache - The cache the downloads go through.
+ * <p>
+ * retries - How many times a failed download is retried.
+ * <p>
+ * backoff - The longest pause before the first retry, in milliseconds. The
+ * limit doubles for every retry.
+ * <p>
+ * breakerFailures - Failures in a row that open an endpoint's breaker.
+ * <p>
+ * breakerCooldown - How long an open breaker refuses calls, in
+ * milliseconds.
+ * <p>
+ * breakers - The circuit breaker of every endpoint.
+ * <p>
+ * metrics - The counters of every endpoint.
+ *
+ * @version 1.0
+ */
+
+public class ApiFetcher {
+
+    /**
+     * System property that sets how many times a download is retried.
+     */
+    public static final String RETRIES_PROPERTY = "radioinfo.fetch.retries";
+
+    /**
+     * System property that sets the longest pause before the first retry,
+     * in milliseconds.
+     */
+    public static final String BACKOFF_PROPERTY = "radioinfo.fetch.backoff";
+
+    /**
+     * System property that sets how many failures in a row open an
+     * endpoint's circuit breaker.
+     */
+    public static final String BREAKER_FAILURES_PROPERTY =
+            "radioinfo.fetch.breaker.failures";
+
+    /**
+     * System property that sets how long an open circuit breaker refuses
+     * calls, in milliseconds.
+     */
+    public static final String BREAKER_COOLDOWN_PROPERTY =
+            "radioinfo.fetch.breaker.cooldown";
+
+    private static final long MAX_BACKOFF = 5000;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int FIRST_SERVER_ERROR = 500;
+
+    private final HttpCache httpCache;
+    private final int retries;
+    private final long backoff;
+    private final int breakerFailures;
+    private final long breakerCooldown;
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers;
+    private final ConcurrentHashMap<String, EndpointMetrics> metrics;
+
+    /**
+     * Creates a fetcher with the settings from the system properties, or 2
+     * retries, 200 ms backoff and breakers that open after 5 failures for
+     * 30 seconds if they aren't set.
+     * @param httpCache The cache to download through.
+     */
+
+    public ApiFetcher(HttpCache httpCache){
+        this(httpCache, Integer.getInteger(RETRIES_PROPERTY, 2),
+                Long.getLong(BACKOFF_PROPERTY, 200),
+                Integer.getInteger(BREAKER_FAILURES_PROPERTY, 5),
+                Long.getLong(BREAKER_COOLDOWN_PROPERTY, 30000));
+    }
+
+    /**
+     * Creates a fetcher with the provided settings.
+     * @param httpCache The cache to download through.
+     * @param retries How many times a failed download is retried.
+     * @param backoff The longest pause before the first retry, in
+     *                milliseconds.
+     * @param breakerFailures Failures in a row that open a breaker.
+     * @param breakerCooldown How long an open breaker refuses calls, in
+     *                        milliseconds.
+     */
+
+    public ApiFetcher(HttpCache httpCache, int retries, long backoff,
+                      int breakerFailures, long breakerCooldown){
+        this.httpCache = httpCache;
+        this.retries = Math.max(0, retries);
+        this.backoff = Math.max(0, backoff);
+        this.breakerFailures = breakerFailures;
+        this.breakerCooldown = breakerCooldown;
+        this.breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+        this.metrics = new ConcurrentHashMap<String, EndpointMetrics>();
+    }
+
+    /**
+     * Downloads an address through the cache, retrying failures, and
+     * waits for the answer. If the endpoint can't be reached, or its
+     * breaker is open, the cached response is returned marked as stale.
+     * @param address The address to download.
+     * @return The response.
+     * @throws IOException If the download failed and nothing is cached, or
+     * if the server refused the request.
+     */
+
+    public HttpCache.Response fetch(String address) throws IOException {
+        try {
+            return fetchAsync(address).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted fetching " +
+                    address);
+        } catch (ExecutionException e) {
+            throw HttpCache.asIOException(e.getCause());
+        }
+    }
+
+    /**
+     * Starts downloading an address through the cache. Returns right away,
+     * and no thread waits while the download or the pauses between retries
+     * are running.
+     * @param address The address to download.
+     * @return The response to come. Fails with an IOException if the
+     * download failed and nothing is cached, or if the server refused the
+     * request. Cancelling it cancels the running request and any retries.
+     */
+
+    public CompletableFuture<HttpCache.Response> fetchAsync(String address){
+        String endpoint = endpointOf(address);
+        CircuitBreaker breaker = breakerOf(endpoint);
+        EndpointMetrics counters = metricsOf(endpoint);
+        CompletableFuture<HttpCache.Response> result =
+                new CompletableFuture<HttpCache.Response>();
+
+        CircuitBreaker.Permit permit = breaker.allowRequest();
+        if(!permit.isGranted()){
+            counters.recordRejected();
+            completeStale(result, address, counters,
+                    new IOException("Circuit open for " + endpoint));
+        }else{
+            attempt(address, 0, breaker, permit, counters, result);
+        }
+        return result;
+    }
+
+    /**
+     * Cancels a try at a download if the download it belongs to is
+     * cancelled.
+     * @param request The try.
+     * @param result The download.
+     */
+
+    private static void cancelWith(
+            final CompletableFuture<HttpCache.Response> request,
+            final CompletableFuture<HttpCache.Response> result){
+        result.whenComplete(new BiConsumer<HttpCache.Response, Throwable>() {
+            public void accept(HttpCache.Response response, Throwable t) {
+                if(result.isCancelled()){
+                    request.cancel(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * Makes one try at downloading an address, and schedules the next try
+     * if it fails.
+     * @param address The address to download.
+     * @param attempt The number of the try, from 0.
+     * @param breaker The breaker of the address's endpoint.
+     * @param permit The permit the breaker gave the download.
+     * @param counters The counters of the address's endpoint.
+     * @param result Completed when the download is done or has failed.
+     */
+
+    private void attempt(final String address, final int attempt,
+                         final CircuitBreaker breaker,
+                         final CircuitBreaker.Permit permit,
+                         final EndpointMetrics counters,
+                         final CompletableFuture<HttpCache.Response> result){
+        if(result.isDone()){
+            /*Cancelled while waiting to retry.*/
+            breaker.onCancel(permit);
+            counters.recordCancelled();
+            return;
+        }
+        final long start = System.nanoTime();
+        CompletableFuture<HttpCache.Response> request =
+                httpCache.fetchAsync(address);
+        cancelWith(request, result);
+        request.whenComplete(
+                new BiConsumer<HttpCache.Response, Throwable>() {
+                    public void accept(HttpCache.Response response,
+                                       Throwable t) {
+                        if(result.isCancelled()){
+                            breaker.onCancel(permit);
+                            counters.recordCancelled();
+                            return;
+                        }
+                        counters.recordCall(millisSince(start), t != null);
+                        if(t == null){
+                            breaker.onSuccess();
+                            result.complete(response);
+                            return;
+                        }
+                        IOException e = HttpCache.asIOException(t);
+                        if(!isRetryable(e)){
+                            /*The server answered, so the endpoint is up.*/
+                            breaker.onSuccess();
+                            result.completeExceptionally(e);
+                        }else if(attempt < retries){
+                            counters.recordRetry();
+                            retryLater(address, attempt + 1, breaker,
+                                    permit, counters, result);
+                        }else{
+                            breaker.onFailure(permit);
+                            completeStale(result, address, counters, e);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Schedules a retry after a random pause under a limit that doubles
+     * for every retry, so that downloads failing at the same time aren't
+     * retried at the same time.
+     * @param address The address to download.
+     * @param attempt The number of the retry, from 1.
+     * @param breaker The breaker of the address's endpoint.
+     * @param permit The permit the breaker gave the download.
+     * @param counters The counters of the address's endpoint.
+     * @param result Completed when the download is done or has failed.
+     */
+
+    private void retryLater(final String address, final int attempt,
+                            final CircuitBreaker breaker,
+                            final CircuitBreaker.Permit permit,
+                            final EndpointMetrics counters,
+                            final CompletableFuture<HttpCache.Response>
+                                    result){
+        long limit = Math.min(MAX_BACKOFF, backoff << Math.min(attempt - 1,
+                20));
+        long delay = limit <= 0 ? 0
+                : ThreadLocalRandom.current().nextLong(limit + 1);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                .execute(new Runnable() {
+                    public void run() {
+                        attempt(address, attempt, breaker, permit, counters,
+                                result);
+                    }
+                });
+    }
+
+    /**
+     * Completes a download with the cached response of its address. The
+     * cached response is read on the cache's disk threads.
+     * @param result The download to complete.
+     * @param address The address.
+     * @param counters The counters of the address's endpoint.
+     * @param failure Why the address couldn't be downloaded, used if
+     *                nothing is cached.
+     */
+
+    private void completeStale(
+            final CompletableFuture<HttpCache.Response> result,
+            String address, final EndpointMetrics counters,
+            final IOException failure){
+        httpCache.loadAsync(address).thenAccept(
+                new Consumer<HttpCache.Response>() {
+                    public void accept(HttpCache.Response cached) {
+                        if(cached == null){
+                            result.completeExceptionally(failure);
+                            return;
+                        }
+                        counters.recordStaleServed();
+                        result.complete(cached.asStale());
+                    }
+                });
+    }
+
+    /**
+     * Checks if a failure may go away if the download is tried again.
+     * Timeouts, lost connections, server errors and rate limiting may,
+     * other refusals from the server won't.
+     * @param e The failure.
+     * @return True if the download should be retried.
+     */
+
+    private static boolean isRetryable(IOException e){
+        if(e instanceof HttpCache.StatusException){
+            int status = ((HttpCache.StatusException) e).getStatus();
+            return status >= FIRST_SERVER_ERROR ||
+                    status == TOO_MANY_REQUESTS;
+        }
+        return true;
+    }
+
+    private static long millisSince(long start){
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * Turns an address into the endpoint it belongs to, the host and path
+     * without the query.
+     * @param address The address.
+     * @return The endpoint.
+     */
+
+    static String endpointOf(String address){
+        try {
+            URL url = new URL(address);
+            return url.getHost() + url.getPath();
+        } catch (MalformedURLException e) {
+            int query = address.indexOf('?');
+            return query < 0 ? address : address.substring(0, query);
+        }
+    }
+
+    private CircuitBreaker breakerOf(String endpoint){
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if(breaker == null){
+            breakers.putIfAbsent(endpoint, new CircuitBreaker(breakerFailures,
+                    breakerCooldown));
+            breaker = breakers.get(endpoint);
+        }
+        return breaker;
+    }
+
+    private EndpointMetrics metricsOf(String endpoint){
+        EndpointMetrics counters = metrics.get(endpoint);
+        if(counters == null){
+            metrics.putIfAbsent(endpoint, new EndpointMetrics());
+            counters = metrics.get(endpoint);
+        }
+        return counters;
+    }
+
+    /**
+     * Getter for the counters of every endpoint that has been called.
+     * @return The counters sorted by endpoint.
+     */
+
+    public Map<String, EndpointMetrics> getMetrics() {
+        return new TreeMap<String, EndpointMetrics>(metrics);
+    }
+
+    /**
+     * Getter for the state of an endpoint's circuit breaker.
+     * @param address An address of the endpoint.
+     * @return The state, closed if the endpoint hasn't been called.
+     */
+
+    public CircuitBreaker.State getBreakerState(String address) {
+        CircuitBreaker breaker = breakers.get(endpointOf(address));
+        return breaker == null ? CircuitBreaker.State.CLOSED
+                : breaker.getState();
+    }
+
+    /**
+     * Getter for the cache the downloads go through.
+     * @return The HTTP cache.
+     */
+
+    public HttpCache getHttpCache() {
+        return httpCache;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * <h1>CircuitBreaker</h1>
+ * Stops calls to an endpoint that keeps failing. After a number of failures
+ * in a row the breaker opens and calls are refused until a cooldown has
+ * passed. Then one trial call is let through, which closes the breaker if
+ * it succeeds and opens it again if it fails.
+ * <p>
+ * failureThreshold - Failures in a row that open the breaker.
+ * <p>
+ * cooldown - How long the breaker stays open, in milliseconds.
+ * <p>
+ * failures - Failures in a row so far.
+ * <p>
+ * openedAt - When the breaker opened, in System.nanoTime, or -1 if it is
+ * closed.
+ * <p>
+ * trialRunning - True while the trial call after a cooldown is running.
+ *
+ * @version 1.0
+ */
+
+public class CircuitBreaker {
+
+    /**
+     * The states of a breaker.
+     */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * The answers to a caller asking to make a call. A caller that is
+     * let through hands its permit back with the outcome, so that only
+     * the trial call can end the trial.
+     */
+    public enum Permit {
+        DENIED, CALL, TRIAL;
+
+        /**
+         * Checks if the call may be made.
+         * @return True unless the call was denied.
+         */
+
+        public boolean isGranted(){
+            return this != DENIED;
+        }
+    }
+
+    private final int failureThreshold;
+    private final long cooldown;
+    private int failures;
+    private long openedAt;
+    private boolean trialRunning;
+
+    /**
+     * Creates a closed breaker.
+     * @param failureThreshold Failures in a row that open the breaker.
+     * @param cooldown How long the breaker stays open, in milliseconds.
+     */
+
+    public CircuitBreaker(int failureThreshold, long cooldown){
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.cooldown = cooldown;
+        this.failures = 0;
+        this.openedAt = -1;
+        this.trialRunning = false;
+    }
+
+    /**
+     * Asks for permission to make a call. A caller that gets permission has
+     * to report the outcome with onSuccess, onFailure or onCancel.
+     * @return TRIAL if the call is the trial after a cooldown, CALL if the
+     * breaker is closed, else DENIED.
+     */
+
+    public synchronized Permit allowRequest(){
+        switch (getState()){
+            case CLOSED:
+                return Permit.CALL;
+            case HALF_OPEN:
+                if(!trialRunning){
+                    trialRunning = true;
+                    return Permit.TRIAL;
+                }
+                return Permit.DENIED;
+            default:
+                return Permit.DENIED;
+        }
+    }
+
+    /**
+     * Reports a successful call, which closes the breaker.
+     */
+
+    public synchronized void onSuccess(){
+        failures = 0;
+        openedAt = -1;
+        trialRunning = false;
+    }
+
+    /**
+     * Reports a failed call. Opens the breaker if the threshold is reached
+     * or if the call was the trial after a cooldown.
+     * @param permit The permit the call was made with.
+     */
+
+    public synchronized void onFailure(Permit permit){
+        failures++;
+        if(permit == Permit.TRIAL || failures >= failureThreshold){
+            openedAt = System.nanoTime();
+        }
+        if(permit == Permit.TRIAL){
+            trialRunning = false;
+        }
+    }
+
+    /**
+     * Reports a call that was cancelled before it had an outcome. Says
+     * nothing about the endpoint, so only a trial is given back, letting
+     * the next call try instead. A call let through while the breaker was
+     * closed leaves a running trial alone.
+     * @param permit The permit the call was made with.
+     */
+
+    public synchronized void onCancel(Permit permit){
+        if(permit == Permit.TRIAL){
+            trialRunning = false;
+        }
+    }
+
+    /**
+     * Getter for the state of the breaker.
+     * @return The current state.
+     */
+
+    public synchronized State getState(){
+        if(openedAt < 0){
+            return State.CLOSED;
+        }
+        if((System.nanoTime() - openedAt) / 1000000 < cooldown){
+            return State.OPEN;
+        }
+        return State.HALF_OPEN;
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h1>EndpointMetrics</h1>
+ * Counters for the calls made to one endpoint. Updated from several fetch
+ * threads at once, so every counter is atomic.
+ * <p>
+ * requests - Calls that got an answer or failed, retries included.
+ * <p>
+ * errors - Calls that failed.
+ * <p>
+ * retries - Calls that were retries of a failed call.
+ * <p>
+ * staleServed - Fetches answered from the cache because the endpoint
+ * couldn't be reached.
+ * <p>
+ * rejected - Fetches refused by an open circuit breaker.
+ * <p>
+ * cancelled - Fetches that were cancelled before they had an outcome.
+ * <p>
+ * totalLatency - The summed time of all calls, in milliseconds.
+ * <p>
+ * maxLatency - The slowest call, in milliseconds.
+ *
+ * @version 1.0
+ */
+
+public class EndpointMetrics {
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Records a finished call.
+     * @param latency How long the call took, in milliseconds.
+     * @param failed True if the call failed.
+     */
+
+    void recordCall(long latency, boolean failed){
+        requests.incrementAndGet();
+        if(failed){
+            errors.incrementAndGet();
+        }
+        totalLatency.addAndGet(latency);
+        long max;
+        while(latency > (max = maxLatency.get()) &&
+                !maxLatency.compareAndSet(max, latency)){
+            /*Another thread raised the max, so check again.*/
+        }
+    }
+
+    void recordRetry(){
+        retries.incrementAndGet();
+    }
+
+    void recordStaleServed(){
+        staleServed.incrementAndGet();
+    }
+
+    void recordRejected(){
+        rejected.incrementAndGet();
+    }
+
+    void recordCancelled(){
+        cancelled.incrementAndGet();
+    }
+
+    /**
+     * Getter for the amount of calls.
+     * @return The amount of calls, retries included.
+     */
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Getter for the amount of failed calls.
+     * @return The amount of failed calls.
+     */
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Getter for the amount of retries.
+     * @return The amount of retries.
+     */
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Getter for the amount of fetches answered from the cache because the
+     * endpoint couldn't be reached.
+     * @return The amount of stale answers.
+     */
+
+    public long getStaleServed() {
+        return staleServed.get();
+    }
+
+    /**
+     * Getter for the amount of fetches refused by the circuit breaker.
+     * @return The amount of refused fetches.
+     */
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Getter for the amount of fetches that were cancelled. A cancelled
+     * fetch is counted once it has stopped, so it makes no more calls.
+     * @return The amount of cancelled fetches.
+     */
+
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Getter for the average time of a call.
+     * @return The average in milliseconds, or 0 if there have been no
+     * calls.
+     */
+
+    public double getAverageLatency() {
+        long n = requests.get();
+        return n == 0 ? 0 : (double) totalLatency.get() / n;
+    }
+
+    /**
+     * Getter for the slowest call.
+     * @return The slowest call in milliseconds.
+     */
+
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    public String toString() {
+        return String.format("requests=%d errors=%d retries=%d stale=%d " +
+                        "rejected=%d cancelled=%d avg=%.1fms max=%dms",
+                getRequests(), getErrors(), getRetries(), getStaleServed(),
+                getRejected(), getCancelled(), getAverageLatency(),
+                getMaxLatency());
+    }
+}
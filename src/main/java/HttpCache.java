@@ -0,0 +1,860 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <h1>HttpCache</h1>
+ * Disk-backed cache of API responses. Every cached address keeps its body,
+ * ETag, Last-Modified, fetch time and how long the server said it stays
+ * fresh, and is revalidated with a conditional request so that unchanged
+ * data isn't downloaded again.
+ * <p>
+ * All caches download through one shared HttpClient, so connections are
+ * kept alive and reused between pages. Bodies are asked for gzipped and
+ * are stored the way they arrived, they are only decompressed while they
+ * are read.
+ * <p>
+ * The cache files are read and written on a small pool of disk threads,
+ * never on the thread that asks for a download. Asking only reads the
+ * validators, the cached body is read when the server answers with a 304,
+ * and a 304 only rewrites the validators and times. Every file is written
+ * next to its place and then moved there, and the validators are removed
+ * before a body is replaced, so a write that is cut short never leaves a
+ * body behind validators that don't belong to it.
+ * <p>
+ * directory - The directory the cached responses are stored in.
+ * <p>
+ * client - The client the downloads are made with.
+ * <p>
+ * readTimeout - How long to wait for an answer, in milliseconds.
+ * <p>
+ * disk - Runs the reads and writes of the cache files.
+ *
+ * @version 1.0
+ */
+
+public class HttpCache {
+
+    /**
+     * System property that sets the cache directory.
+     */
+    public static final String DIRECTORY_PROPERTY = "radioinfo.httpcache.dir";
+
+    /**
+     * System property that sets the connect timeout in milliseconds.
+     */
+    public static final String CONNECT_TIMEOUT_PROPERTY =
+            "radioinfo.http.connecttimeout";
+
+    /**
+     * System property that sets the read timeout in milliseconds.
+     */
+    public static final String READ_TIMEOUT_PROPERTY =
+            "radioinfo.http.readtimeout";
+
+    /**
+     * System property that lets the shared client use HTTP/2, "true" or
+     * "false". Off by default, since plain HTTP/2 needs an upgrade that
+     * not every server handles.
+     */
+    public static final String HTTP2_PROPERTY = "radioinfo.http2";
+
+    private static final int NOT_MODIFIED = 304;
+    private static final int FIRST_ERROR = 400;
+    private static final String GZIP = "gzip";
+    private static final int DISK_THREADS = 2;
+
+    private File directory;
+    private HttpClient client;
+    private int readTimeout;
+    private Executor disk;
+
+    /**
+     * Creates a cache in the directory from the system property, or in
+     * .radioinfo/http-cache in the home directory if it isn't set.
+     */
+
+    public HttpCache(){
+        this(new File(System.getProperty(DIRECTORY_PROPERTY,
+                System.getProperty("user.home") + File.separator +
+                        ".radioinfo" + File.separator + "http-cache")));
+    }
+
+    /**
+     * Creates a cache in the provided directory.
+     * @param directory The directory to store responses in.
+     */
+
+    public HttpCache(File directory){
+        this(directory, SharedClient.INSTANCE);
+    }
+
+    /**
+     * Creates a cache in the provided directory that downloads with the
+     * provided client.
+     * @param directory The directory to store responses in.
+     * @param client The client to download with.
+     */
+
+    HttpCache(File directory, HttpClient client){
+        this.directory = directory;
+        this.client = client;
+        this.readTimeout = Integer.getInteger(READ_TIMEOUT_PROPERTY, 15000);
+        this.disk = DiskThreads.INSTANCE;
+    }
+
+    /**
+     * Holder of the shared client, created the first time it is used.
+     */
+
+    private static class SharedClient {
+        static final HttpClient INSTANCE = createClient();
+    }
+
+    /**
+     * Holder of the shared disk threads, created the first time they are
+     * used.
+     */
+
+    private static class DiskThreads {
+        static final Executor INSTANCE = createDiskPool();
+    }
+
+    /**
+     * Creates the pool that reads and writes the cache files. The threads
+     * are daemons that stop when they have been idle for a while.
+     * @return The new pool.
+     */
+
+    private static Executor createDiskPool(){
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(DISK_THREADS,
+                DISK_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "radio-cache-" +
+                                count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Creates a client with the connect timeout and HTTP version from the
+     * system properties.
+     * @return The new client.
+     */
+
+    static HttpClient createClient(){
+        return HttpClient.newBuilder()
+                .version(Boolean.getBoolean(HTTP2_PROPERTY)
+                        ? HttpClient.Version.HTTP_2
+                        : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(Integer.getInteger(
+                        CONNECT_TIMEOUT_PROPERTY, 5000)))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Sets how long to wait for an answer. The connect timeout belongs to
+     * the shared client and is set with the system property.
+     * @param readTimeout The timeout in milliseconds, 0 waits forever.
+     */
+
+    public void setReadTimeout(int readTimeout){
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Downloads an address, revalidating an earlier cached response if
+     * there is one, and waits for the answer.
+     * @param address The address to download.
+     * @return The response, marked as not modified if the server said that
+     * the cached body is still valid.
+     * @throws IOException If the download fails or times out.
+     * @throws StatusException If the server answers with an error status.
+     */
+
+    public Response fetch(String address) throws IOException {
+        try {
+            return fetchAsync(address).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted fetching " +
+                    address);
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        }
+    }
+
+    /**
+     * Starts downloading an address, revalidating an earlier cached
+     * response if there is one. Returns right away, no thread waits for
+     * the answer, and the cache files are read and written on the disk
+     * threads. Addresses that aren't HTTP are read without caching.
+     * @param address The address to download.
+     * @return The response to come, marked as not modified if the server
+     * said that the cached body is still valid. Fails with an IOException,
+     * or a StatusException if the server answers with an error status.
+     * Cancelling it cancels the request.
+     */
+
+    public CompletableFuture<Response> fetchAsync(final String address){
+        final URI uri;
+        try {
+            uri = new URI(address);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(
+                    new IOException("Bad address " + address, e));
+        }
+        final CompletableFuture<Response> result =
+                new CompletableFuture<Response>();
+        if(!"http".equalsIgnoreCase(uri.getScheme()) &&
+                !"https".equalsIgnoreCase(uri.getScheme())){
+            disk.execute(new Runnable() {
+                public void run() {
+                    try {
+                        result.complete(new Response(readAll(
+                                new URL(address).openStream()), null, null,
+                                System.currentTimeMillis(), false));
+                    } catch (IOException e) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            });
+            return result;
+        }
+
+        final AtomicReference<Future<?>> exchange =
+                new AtomicReference<Future<?>>();
+        disk.execute(new Runnable() {
+            public void run() {
+                send(address, uri, loadValidators(address), result,
+                        exchange);
+            }
+        });
+        result.whenComplete(new BiConsumer<Response, Throwable>() {
+            public void accept(Response r, Throwable t) {
+                Future<?> sent = exchange.get();
+                if(result.isCancelled() && sent != null){
+                    /*Aborts the exchange on Java versions that support
+                    * it.*/
+                    sent.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Sends a request for an address and completes the download with the
+     * answer, on the disk threads.
+     * @param address The address to download.
+     * @param uri The address as a URI.
+     * @param validators The validators of the cached response, or null to
+     *                   ask for the whole body.
+     * @param result The download to complete.
+     * @param exchange Set to the request that is running.
+     */
+
+    private void send(final String address, final URI uri,
+                      final Response validators,
+                      final CompletableFuture<Response> result,
+                      final AtomicReference<Future<?>> exchange){
+        if(result.isDone()){
+            /*Cancelled before the request was sent.*/
+            return;
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .header("Accept-Encoding", GZIP);
+        if(readTimeout > 0){
+            request.timeout(Duration.ofMillis(readTimeout));
+        }
+        if(validators != null){
+            if(validators.getETag() != null){
+                request.header("If-None-Match", validators.getETag());
+            }
+            if(validators.getLastModified() != null){
+                request.header("If-Modified-Since",
+                        validators.getLastModified());
+            }
+        }
+        CompletableFuture<HttpResponse<byte[]>> sent = client.sendAsync(
+                request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        exchange.set(sent);
+        if(result.isCancelled()){
+            sent.cancel(true);
+            return;
+        }
+        sent.whenCompleteAsync(new BiConsumer<HttpResponse<byte[]>,
+                Throwable>() {
+            public void accept(HttpResponse<byte[]> http, Throwable t) {
+                if(t != null){
+                    result.completeExceptionally(asIOException(t));
+                    return;
+                }
+                try {
+                    Response response = handle(address, validators, http);
+                    if(response != null){
+                        result.complete(response);
+                    }else if(validators != null){
+                        /*The cached body is gone or has been replaced, so
+                        * the 304 can't be used. Asks for the whole body.*/
+                        send(address, uri, null, result, exchange);
+                    }else{
+                        result.completeExceptionally(new IOException(
+                                "HTTP 304 without a cached body from " +
+                                        address));
+                    }
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }, disk);
+    }
+
+    /**
+     * Turns an answer from the server into a response and stores it. A
+     * 304 reads the cached body and only rewrites the validators and
+     * times.
+     * @param address The downloaded address.
+     * @param validators The validators that were sent, or null.
+     * @param http The answer.
+     * @return The response, or null if the answer is a 304 and the body
+     * the validators belong to isn't cached.
+     * @throws StatusException If the server answered with an error status.
+     */
+
+    private Response handle(String address, Response validators,
+                            HttpResponse<byte[]> http)
+            throws StatusException {
+        int status = http.statusCode();
+        if(status >= FIRST_ERROR){
+            throw new StatusException(address, status);
+        }
+        long now = System.currentTimeMillis();
+        long expires = expiresOf(http.headers(), now);
+        if(status == NOT_MODIFIED){
+            Response cached = validators == null ? null : load(address);
+            if(cached == null ||
+                    !Objects.equals(cached.getETag(), validators.getETag()) ||
+                    !Objects.equals(cached.getLastModified(),
+                            validators.getLastModified())){
+                return null;
+            }
+            Response revalidated = new Response(cached.body, cached.encoding,
+                    cached.getETag(), cached.getLastModified(), now, true,
+                    false, expires);
+            storeMeta(address, revalidated);
+            return revalidated;
+        }
+        Response fresh = new Response(http.body(),
+                http.headers().firstValue("Content-Encoding").orElse(null),
+                http.headers().firstValue("ETag").orElse(null),
+                http.headers().firstValue("Last-Modified").orElse(null),
+                now, false, false, expires);
+        store(address, fresh);
+        return fresh;
+    }
+
+    /**
+     * Reads how long an answer stays fresh from its headers.
+     * @param headers The headers of the answer.
+     * @param now The time the answer arrived in milliseconds.
+     * @return The time the answer stops being fresh in milliseconds, or 0
+     * if the server didn't say.
+     */
+
+    private static long expiresOf(HttpHeaders headers, long now){
+        return expiresOf(headers.firstValue("Cache-Control").orElse(null),
+                headers.firstValue("Expires").orElse(null),
+                headers.firstValue("Date").orElse(null), now);
+    }
+
+    /**
+     * Works out when an answer stops being fresh. Cache-Control wins over
+     * Expires. Expires is taken relative to the server's Date, so a clock
+     * that is off on either side doesn't matter.
+     * @param cacheControl The Cache-Control header, or null.
+     * @param expires The Expires header, or null.
+     * @param date The Date header, or null.
+     * @param now The time the answer arrived in milliseconds.
+     * @return The time the answer stops being fresh in milliseconds, or 0
+     * if the server didn't say.
+     */
+
+    static long expiresOf(String cacheControl, String expires, String date,
+                          long now){
+        if(cacheControl != null){
+            for(String directive : cacheControl.toLowerCase(Locale.ROOT)
+                    .split(",")){
+                directive = directive.trim();
+                if(directive.equals("no-cache") ||
+                        directive.equals("no-store")){
+                    return now;
+                }
+                if(directive.startsWith("max-age=")){
+                    try {
+                        return now + 1000 * Math.max(0, Long.parseLong(
+                                directive.substring(8).replace("\"", "")));
+                    } catch (NumberFormatException e) {
+                        /*A broken max-age means the answer is stale.*/
+                        return now;
+                    }
+                }
+            }
+        }
+        if(expires == null){
+            return 0;
+        }
+        long until = parseDate(expires);
+        if(until < 0){
+            /*A broken Expires means the answer is already stale.*/
+            return now;
+        }
+        long sent = date == null ? -1 : parseDate(date);
+        return sent < 0 ? until : now + Math.max(0, until - sent);
+    }
+
+    /**
+     * Parses an HTTP date.
+     * @param date The date.
+     * @return The date in milliseconds, or -1 if it can't be parsed.
+     */
+
+    private static long parseDate(String date){
+        try {
+            return ZonedDateTime.parse(date.trim(),
+                    DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Unwraps the failure of a download.
+     * @param t The failure.
+     * @return The failure as an IOException.
+     */
+
+    static IOException asIOException(Throwable t){
+        while(t instanceof CompletionException && t.getCause() != null){
+            t = t.getCause();
+        }
+        if(t instanceof IOException){
+            return (IOException) t;
+        }
+        return new IOException(t);
+    }
+
+    /**
+     * Starts reading a cached response from disk on the disk threads.
+     * @param address The address of the response.
+     * @return The cached response to come, or null if there is none.
+     */
+
+    CompletableFuture<Response> loadAsync(final String address){
+        return CompletableFuture.supplyAsync(new Supplier<Response>() {
+            public Response get() {
+                return load(address);
+            }
+        }, disk);
+    }
+
+    /**
+     * Reads a cached response from disk.
+     * @param address The address of the response.
+     * @return The cached response, or null if there is none.
+     */
+
+    synchronized Response load(String address){
+        Properties p = loadMeta(address);
+        File body = new File(directory, keyOf(address) + ".body");
+        if(p == null || !body.isFile()){
+            return null;
+        }
+        try {
+            return new Response(readAll(new FileInputStream(body)),
+                    p.getProperty("encoding"), p.getProperty("etag"),
+                    p.getProperty("lastModified"),
+                    Long.parseLong(p.getProperty("fetchTime", "0")), false,
+                    false, Long.parseLong(p.getProperty("expires", "0")));
+        } catch (Exception e) {
+            /*A broken entry is treated as a missing one.*/
+            return null;
+        }
+    }
+
+    /**
+     * Reads the validators of a cached response, without its body.
+     * @param address The address of the response.
+     * @return A response holding only the ETag and Last-Modified date, or
+     * null if nothing is cached.
+     */
+
+    private synchronized Response loadValidators(String address){
+        Properties p = loadMeta(address);
+        if(p == null){
+            return null;
+        }
+        return new Response(null, p.getProperty("etag"),
+                p.getProperty("lastModified"), 0, false);
+    }
+
+    /**
+     * Reads the metadata of a cached response.
+     * @param address The address of the response.
+     * @return The metadata, or null if there is none or it is broken.
+     */
+
+    private Properties loadMeta(String address){
+        File meta = new File(directory, keyOf(address) + ".meta");
+        if(!meta.isFile()){
+            return null;
+        }
+        try {
+            Properties p = new Properties();
+            InputStream in = new FileInputStream(meta);
+            try {
+                p.load(in);
+            } finally {
+                in.close();
+            }
+            return address.equals(p.getProperty("url")) ? p : null;
+        } catch (Exception e) {
+            /*A broken entry is treated as a missing one.*/
+            return null;
+        }
+    }
+
+    /**
+     * Writes a response to disk. The old metadata is removed first, so
+     * until the new metadata is written the entry is missing rather than
+     * pairing one body with the validators of another. Failing to write
+     * only means that the response isn't cached, so errors are ignored.
+     * @param address The address of the response.
+     * @param response The response to store.
+     */
+
+    private synchronized void store(String address, Response response){
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            return;
+        }
+        try {
+            Files.deleteIfExists(
+                    new File(directory, keyOf(address) + ".meta").toPath());
+            write(new File(directory, keyOf(address) + ".body"),
+                    response.body);
+            storeMeta(address, response);
+        } catch (IOException e) {
+            /*Do nothing, the response will be downloaded again next time.*/
+        }
+    }
+
+    /**
+     * Writes the metadata of a response whose body is already on disk.
+     * Errors are ignored, see store.
+     * @param address The address of the response.
+     * @param response The response.
+     */
+
+    private synchronized void storeMeta(String address, Response response){
+        Properties p = new Properties();
+        p.setProperty("url", address);
+        if(response.encoding != null){
+            p.setProperty("encoding", response.encoding);
+        }
+        if(response.getETag() != null){
+            p.setProperty("etag", response.getETag());
+        }
+        if(response.getLastModified() != null){
+            p.setProperty("lastModified", response.getLastModified());
+        }
+        p.setProperty("fetchTime", Long.toString(response.getFetchTime()));
+        p.setProperty("expires", Long.toString(response.getExpires()));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            p.store(out, null);
+            write(new File(directory, keyOf(address) + ".meta"),
+                    out.toByteArray());
+        } catch (IOException e) {
+            /*Do nothing, the response will be downloaded again next time.*/
+        }
+    }
+
+    /**
+     * Turns an address into a file name.
+     * @param address The address.
+     * @return The SHA-1 of the address in hex.
+     */
+
+    private static String keyOf(String address){
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            StringBuilder sb = new StringBuilder();
+            for(byte b : md.digest(
+                    address.getBytes(StandardCharsets.UTF_8))){
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            /*Every Java platform is required to support SHA-1.*/
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads a stream to the end and closes it.
+     * @param in The stream to read.
+     * @return The read bytes.
+     * @throws IOException If reading fails.
+     */
+
+    static byte[] readAll(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1){
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes bytes to a file. The bytes are written to a temporary file in
+     * the same directory, which then atomically replaces the file, so the
+     * file is either the old one or the whole new one.
+     * @param file The file to write.
+     * @param data The bytes to write.
+     * @throws IOException If writing fails, or the file system can't
+     * replace the file atomically.
+     */
+
+    private static void write(File file, byte[] data) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp",
+                file.getParentFile());
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Thrown when the server answers with a 4xx or 5xx status.
+     */
+
+    public static class StatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        StatusException(String address, int status){
+            super("HTTP " + status + " from " + address);
+            this.status = status;
+        }
+
+        /**
+         * Getter for the HTTP status.
+         * @return The status code.
+         */
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * A downloaded or cached response. The body is kept the way the server
+     * sent it, gzipped or not.
+     */
+
+    public static class Response {
+        private byte[] body;
+        private String encoding;
+        private String eTag;
+        private String lastModified;
+        private long fetchTime;
+        private boolean notModified;
+        private boolean stale;
+        private long expires;
+
+        Response(byte[] body, String eTag, String lastModified,
+                 long fetchTime, boolean notModified){
+            this(body, null, eTag, lastModified, fetchTime, notModified,
+                    false);
+        }
+
+        Response(byte[] body, String encoding, String eTag,
+                 String lastModified, long fetchTime, boolean notModified,
+                 boolean stale){
+            this(body, encoding, eTag, lastModified, fetchTime, notModified,
+                    stale, 0);
+        }
+
+        Response(byte[] body, String encoding, String eTag,
+                 String lastModified, long fetchTime, boolean notModified,
+                 boolean stale, long expires){
+            this.body = body;
+            this.encoding = encoding;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.fetchTime = fetchTime;
+            this.notModified = notModified;
+            this.stale = stale;
+            this.expires = expires;
+        }
+
+        /**
+         * Makes a copy of a cached response that is served because the
+         * server couldn't be reached.
+         * @return The stale copy.
+         */
+
+        Response asStale() {
+            return new Response(body, encoding, eTag, lastModified,
+                    fetchTime, false, true, expires);
+        }
+
+        /**
+         * Opens the body for reading, decompressing it while it is read if
+         * it is gzipped.
+         * @return A stream of the body.
+         * @throws IOException If the gzip header is broken.
+         */
+
+        public InputStream openStream() throws IOException {
+            InputStream in = new ByteArrayInputStream(body);
+            if(GZIP.equalsIgnoreCase(encoding)){
+                return new GZIPInputStream(in);
+            }
+            return in;
+        }
+
+        /**
+         * Getter for the body, decompressed.
+         * @return The body.
+         * @throws IOException If the body can't be decompressed.
+         */
+
+        public byte[] getBody() throws IOException {
+            if(encoding == null){
+                return body;
+            }
+            return readAll(openStream());
+        }
+
+        /**
+         * Getter for the ETag.
+         * @return The ETag, or null if the server didn't send one.
+         */
+
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Getter for the Last-Modified date.
+         * @return The Last-Modified date, or null if the server didn't
+         * send one.
+         */
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Getter for the time the response was last fetched or revalidated.
+         * @return The fetch time in milliseconds.
+         */
+
+        public long getFetchTime() {
+            return fetchTime;
+        }
+
+        /**
+         * Checks if the server said that the cached body is still valid.
+         * @return True if the response was a 304, else returns false.
+         */
+
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        /**
+         * Checks if the response is an old cached body that was served
+         * because the server couldn't be reached.
+         * @return True if the body may be out of date, else returns false.
+         */
+
+        public boolean isStale() {
+            return stale;
+        }
+
+        /**
+         * Getter for the time the server said the response stops being
+         * fresh, from Cache-Control or Expires.
+         * @return The time in milliseconds, or 0 if the server didn't say.
+         */
+
+        public long getExpires() {
+            return expires;
+        }
+    }
+}
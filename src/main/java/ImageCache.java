@@ -0,0 +1,173 @@
+import javax.swing.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <h1>ImageCache</h1>
+ * Shared cache of downloaded images keyed by address. Evicts the least
+ * recently used images once the decoded size of all images goes over the
+ * byte budget.
+ * <p>
+ * budget - The maximum amount of decoded bytes to keep.
+ * <p>
+ * usedBytes - The decoded size of all cached images.
+ * <p>
+ * images - The cached images in least recently used order.
+ * <p>
+ * hits - The amount of lookups that found an image.
+ * <p>
+ * misses - The amount of lookups that didn't find an image.
+ * <p>
+ * evictions - The amount of images thrown out to stay within the budget.
+ *
+ * @version 1.0
+ */
+
+public class ImageCache {
+
+    /**
+     * System property that sets the byte budget of the shared cache.
+     */
+    public static final String BUDGET_PROPERTY = "radioinfo.imagecache.bytes";
+
+    private static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private long budget;
+    private long usedBytes;
+    private LinkedHashMap<String, ImageIcon> images;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache with the budget from the system property, or 32 MB
+     * if it isn't set.
+     */
+
+    public ImageCache(){
+        this(Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+    }
+
+    /**
+     * Creates a cache with the provided budget.
+     * @param budget The maximum amount of decoded bytes to keep.
+     */
+
+    public ImageCache(long budget){
+        this.budget = budget;
+        this.usedBytes = 0;
+        this.images = new LinkedHashMap<String, ImageIcon>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets a cached image and marks it as recently used.
+     * @param address The address of the image.
+     * @return The image, or null if it isn't cached.
+     */
+
+    public synchronized ImageIcon get(String address){
+        ImageIcon image = images.get(address);
+        if(image != null){
+            hits++;
+        }else{
+            misses++;
+        }
+        return image;
+    }
+
+    /**
+     * Adds an image to the cache and evicts old images until the cache is
+     * within its budget. Images larger than the whole budget aren't cached.
+     * @param address The address of the image.
+     * @param image The image to add.
+     */
+
+    public synchronized void put(String address, ImageIcon image){
+        long size = sizeOf(image);
+        if(size > budget){
+            return;
+        }
+        ImageIcon old = images.put(address, image);
+        if(old != null){
+            usedBytes -= sizeOf(old);
+        }
+        usedBytes += size;
+
+        Iterator<Map.Entry<String, ImageIcon>> it =
+                images.entrySet().iterator();
+        while(usedBytes > budget && it.hasNext()){
+            Map.Entry<String, ImageIcon> eldest = it.next();
+            usedBytes -= sizeOf(eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Calculates the decoded size of an image.
+     * @param image The image to measure.
+     * @return The size in bytes. Images that failed to load count as 0.
+     */
+
+    static long sizeOf(ImageIcon image){
+        long width = Math.max(image.getIconWidth(), 0);
+        long height = Math.max(image.getIconHeight(), 0);
+        return width * height * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Getter for the byte budget.
+     * @return The byte budget.
+     */
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Getter for the decoded size of all cached images.
+     * @return The used bytes.
+     */
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Getter for the amount of cached images.
+     * @return The amount of cached images.
+     */
+
+    public synchronized int size() {
+        return images.size();
+    }
+
+    /**
+     * Getter for the amount of lookups that found an image.
+     * @return The amount of hits.
+     */
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter for the amount of lookups that didn't find an image.
+     * @return The amount of misses.
+     */
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Getter for the amount of evicted images.
+     * @return The amount of evictions.
+     */
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
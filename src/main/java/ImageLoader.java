@@ -0,0 +1,199 @@
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * <h1>ImageLoader</h1>
+ * Downloads channel and program images in the background so that parsing
+ * never has to wait for image downloads.
+ * <p>
+ * instance - The loader shared by all channels and programs.
+ * <p>
+ * executor - The executor that does the downloading. It has permits of
+ * its own, so downloads never wait for the tasks that wait for them.
+ * <p>
+ * pending - Downloads in progress, keyed by address. Used to let
+ * concurrent requests for the same address share one download.
+ * <p>
+ * cache - Downloaded images, shared by all channels and programs.
+ *
+ * @version 1.0
+ */
+
+public class ImageLoader {
+
+    private static final ImageLoader instance = new ImageLoader();
+
+    private IoExecutor executor;
+    private ConcurrentHashMap<String, Future<ImageIcon>> pending;
+    private ImageCache cache;
+
+    ImageLoader(){
+        this(new ImageCache());
+    }
+
+    ImageLoader(ImageCache cache){
+        this(cache, IoExecutor.getImageInstance());
+    }
+
+    ImageLoader(ImageCache cache, IoExecutor executor){
+        this.cache = cache;
+        this.executor = executor;
+        pending = new ConcurrentHashMap<String, Future<ImageIcon>>();
+    }
+
+    /**
+     * Getter for the shared loader.
+     * @return The shared loader.
+     */
+
+    public static ImageLoader getInstance() {
+        return instance;
+    }
+
+    /**
+     * Getter for the image cache.
+     * @return The image cache.
+     */
+
+    public ImageCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets an image from the cache without downloading it.
+     * @param address The address of the image. May be null.
+     * @return The image, or null if it isn't cached.
+     */
+
+    public ImageIcon getCached(URL address){
+        if(address == null){
+            return null;
+        }
+        return cache.get(address.toString());
+    }
+
+    /**
+     * Starts downloading an image and returns right away. Cached images
+     * are returned as an already finished future. If the same address is
+     * already being downloaded the existing download is shared.
+     * @param address The address of the image.
+     * @return A future holding the image once it has been downloaded.
+     */
+
+    public Future<ImageIcon> load(final URL address){
+        final String key = address.toString();
+        ImageIcon cached = cache.get(key);
+        if(cached != null){
+            FutureTask<ImageIcon> done = new FutureTask<ImageIcon>(
+                    new Runnable() {
+                        public void run() {
+                        }
+                    }, cached);
+            done.run();
+            return done;
+        }
+
+        Future<ImageIcon> existing = pending.get(key);
+        if(existing != null){
+            return existing;
+        }
+
+        FutureTask<ImageIcon> task = new FutureTask<ImageIcon>(
+                new Callable<ImageIcon>() {
+                    public ImageIcon call() throws IOException {
+                        ImageIcon image = decode(address);
+                        cache.put(key, image);
+                        return image;
+                    }
+                }){
+            @Override
+            protected void done() {
+                pending.remove(key, this);
+            }
+        };
+        existing = pending.putIfAbsent(key, task);
+        if(existing != null){
+            return existing;
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Downloads and decodes an image. The bytes are decoded by the toolkit
+     * directly, since an image created from an address is also kept in
+     * the toolkit's own image cache, outside the budget of the cache here.
+     * The address is kept as the description of the image.
+     * @param address The address of the image.
+     * @return The decoded image.
+     * @throws IOException If the image can't be downloaded or decoded.
+     */
+
+    private static ImageIcon decode(URL address) throws IOException {
+        byte[] bytes;
+        try (InputStream in = address.openStream()) {
+            bytes = in.readAllBytes();
+        }
+        ImageIcon image = new ImageIcon(
+                Toolkit.getDefaultToolkit().createImage(bytes),
+                address.toString());
+        if(image.getImageLoadStatus() != MediaTracker.COMPLETE){
+            throw new IOException("Could not decode image " + address);
+        }
+        return image;
+    }
+
+    /**
+     * Gets the image of a future without waiting for it.
+     * @param image The future holding the image. May be null.
+     * @return The image, or null if there is none or it isn't done yet.
+     */
+
+    public static ImageIcon getNow(Future<ImageIcon> image){
+        if(image == null || !image.isDone()){
+            return null;
+        }
+        return await(image);
+    }
+
+    /**
+     * Waits for the image of a future. A download that hasn't started yet
+     * is run on the waiting thread, so an image someone waits for doesn't
+     * wait behind the images that are only downloaded ahead of time.
+     * Should not be called on the EDT.
+     * @param image The future holding the image. May be null.
+     * @return The image, or null if there is none, the download failed or
+     * it was cancelled.
+     */
+
+    public static ImageIcon await(Future<ImageIcon> image){
+        if(image == null){
+            return null;
+        }
+        if(image instanceof FutureTask && !image.isDone()){
+            /*Does nothing if the download is already running or done.*/
+            ((FutureTask<ImageIcon>) image).run();
+        }
+        try {
+            return image.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            /*A null image will be replaced by the default image
+             in the view.*/
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        }
+    }
+}
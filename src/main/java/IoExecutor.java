@@ -0,0 +1,400 @@
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h1>IoExecutor</h1>
+ * Runs the tasks that block on the network, such as schedule loads and
+ * image downloads. Every task gets a virtual thread on Java versions that
+ * have them, and a thread from a pool of daemon threads on older ones. In
+ * both cases at most limit tasks run at once and the rest wait in line.
+ * Tasks can be grouped in a scope, which cancels all of them at once.
+ * <p>
+ * Image downloads run on an executor of their own, with a limit of its
+ * own. Tasks on the shared executor wait for images while they hold a
+ * permit, so if the downloads needed the same permits every permit could
+ * be held by a task waiting for a download that can't start.
+ * <p>
+ * instance - The executor shared by the whole program.
+ * <p>
+ * images - The executor that downloads images.
+ * <p>
+ * threads - The executor that gives the tasks their threads.
+ * <p>
+ * virtual - True if the tasks run on virtual threads.
+ * <p>
+ * limit - The maximum amount of tasks running at once.
+ * <p>
+ * permits - One permit for every task that may run.
+ * <p>
+ * active - The amount of running tasks.
+ * <p>
+ * queued - The amount of tasks waiting to run.
+ * <p>
+ * completed - The amount of tasks that have run.
+ *
+ * @version 1.0
+ */
+
+public class IoExecutor {
+
+    /**
+     * System property that turns virtual threads off, "true" or "false".
+     */
+    public static final String VIRTUAL_PROPERTY = "radioinfo.io.virtual";
+
+    /**
+     * System property that sets how many tasks may run at once.
+     */
+    public static final String LIMIT_PROPERTY = "radioinfo.io.limit";
+
+    /**
+     * System property that sets how many images may be downloaded at once.
+     */
+    public static final String IMAGE_LIMIT_PROPERTY =
+            "radioinfo.io.imagelimit";
+
+    private static final int DEFAULT_LIMIT = 16;
+    private static final int DEFAULT_IMAGE_LIMIT = 8;
+    private static final IoExecutor instance = new IoExecutor();
+    private static final IoExecutor images = new IoExecutor(
+            Boolean.parseBoolean(System.getProperty(VIRTUAL_PROPERTY,
+                    "true")), Integer.getInteger(IMAGE_LIMIT_PROPERTY,
+            DEFAULT_IMAGE_LIMIT));
+
+    private final ExecutorService threads;
+    private final boolean virtual;
+    private final int limit;
+    private final Semaphore permits;
+    private final AtomicInteger active;
+    private final AtomicInteger queued;
+    private final AtomicLong completed;
+
+    /**
+     * Creates an executor with the settings from the system properties,
+     * or virtual threads and a limit of 16 tasks if they aren't set.
+     */
+
+    IoExecutor(){
+        this(Boolean.parseBoolean(System.getProperty(VIRTUAL_PROPERTY,
+                "true")), Integer.getInteger(LIMIT_PROPERTY, DEFAULT_LIMIT));
+    }
+
+    /**
+     * Creates an executor with the provided settings.
+     * @param preferVirtual True to use virtual threads if the Java version
+     *                      has them.
+     * @param limit The maximum amount of tasks running at once.
+     */
+
+    IoExecutor(boolean preferVirtual, int limit){
+        this.limit = Math.max(1, limit);
+        ExecutorService virtualThreads = preferVirtual
+                ? newVirtualThreadExecutor() : null;
+        this.virtual = virtualThreads != null;
+        this.threads = virtual ? virtualThreads
+                : newPlatformThreadPool(this.limit);
+        this.permits = new Semaphore(this.limit, true);
+        this.active = new AtomicInteger();
+        this.queued = new AtomicInteger();
+        this.completed = new AtomicLong();
+    }
+
+    /**
+     * Getter for the shared executor.
+     * @return The shared executor.
+     */
+
+    public static IoExecutor getInstance() {
+        return instance;
+    }
+
+    /**
+     * Getter for the executor that downloads images. Its tasks must not
+     * wait for other tasks.
+     * @return The image executor.
+     */
+
+    public static IoExecutor getImageInstance() {
+        return images;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task. Looked up
+     * by reflection since the program is built for Java versions without
+     * them.
+     * @return The executor, or null if virtual threads aren't available.
+     */
+
+    private static ExecutorService newVirtualThreadExecutor(){
+        try {
+            Method factory = Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (Exception e) {
+            /*Missing before Java 21, and a preview that may be turned off
+            * in 19 and 20.*/
+            return null;
+        }
+    }
+
+    /**
+     * Creates the pool used when there are no virtual threads. The
+     * threads are daemons that stop when they have been idle for a while,
+     * so an idle pool never keeps the program alive.
+     * @param size The amount of threads.
+     * @return The new pool.
+     */
+
+    private static ExecutorService newPlatformThreadPool(int size){
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 30,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "radio-io-" +
+                                count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Runs a task in the background.
+     * @param task The task to run.
+     */
+
+    public void execute(Runnable task){
+        submit(Executors.callable(task));
+    }
+
+    /**
+     * Runs a task in the background.
+     * @param task The task to run.
+     * @param <T> The type of the result.
+     * @return The result to come. Cancelling it interrupts the task.
+     */
+
+    public <T> Future<T> submit(Callable<T> task){
+        return start(new Task<T>(task, null));
+    }
+
+    /**
+     * Creates a scope to group tasks that should be cancelled together.
+     * @return The new scope.
+     */
+
+    public Scope newScope(){
+        return new Scope();
+    }
+
+    /**
+     * Counts a task as waiting and hands it to a thread.
+     * @param task The task.
+     * @param <T> The type of the result.
+     * @return The task.
+     */
+
+    private <T> Task<T> start(Task<T> task){
+        queued.incrementAndGet();
+        threads.execute(task);
+        return task;
+    }
+
+    /**
+     * Checks if the tasks run on virtual threads.
+     * @return True if they do, false if they run on the fallback pool.
+     */
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Getter for the maximum amount of tasks running at once.
+     * @return The limit.
+     */
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Getter for the amount of running tasks.
+     * @return The amount of running tasks.
+     */
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * Getter for the amount of tasks waiting for their turn.
+     * @return The amount of waiting tasks.
+     */
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Getter for the amount of tasks that have run.
+     * @return The amount of finished tasks.
+     */
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public String toString() {
+        return String.format("%s threads, active=%d queued=%d " +
+                        "completed=%d limit=%d", virtual ? "virtual"
+                        : "platform", getActiveCount(), getQueuedCount(),
+                getCompletedCount(), limit);
+    }
+
+    /**
+     * A task that waits for a permit before it runs and keeps the counts
+     * up to date.
+     */
+
+    private class Task<T> extends FutureTask<T> {
+        private final Scope scope;
+        private final AtomicBoolean started;
+
+        Task(Callable<T> callable, Scope scope){
+            super(callable);
+            this.scope = scope;
+            this.started = new AtomicBoolean();
+        }
+
+        public void run() {
+            if(isDone()){
+                /*Cancelled while waiting for a thread.*/
+                return;
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                /*Only happens if the threads are shut down.*/
+                cancel(false);
+                return;
+            }
+            try {
+                if(!started.compareAndSet(false, true)){
+                    /*Cancelled while waiting, and already counted.*/
+                    return;
+                }
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    super.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if(started.compareAndSet(false, true)){
+                queued.decrementAndGet();
+            }
+            if(scope != null){
+                scope.tasks.remove(this);
+            }
+        }
+    }
+
+    /**
+     * A group of tasks that is cancelled as one, for example all the work
+     * of loading a channel that the user has left. Tasks submitted after
+     * the scope has been cancelled are cancelled right away.
+     */
+
+    public class Scope {
+        private final Set<Task<?>> tasks;
+        private volatile boolean cancelled;
+
+        Scope(){
+            this.tasks = ConcurrentHashMap.newKeySet();
+            this.cancelled = false;
+        }
+
+        /**
+         * Runs a task in the background as part of the scope.
+         * @param task The task to run.
+         * @param <T> The type of the result.
+         * @return The result to come.
+         */
+
+        public <T> Future<T> submit(Callable<T> task){
+            Task<T> t = new Task<T>(task, this);
+            tasks.add(t);
+            start(t);
+            if(cancelled){
+                t.cancel(true);
+            }
+            return t;
+        }
+
+        /**
+         * Runs a task in the background as part of the scope.
+         * @param task The task to run.
+         */
+
+        public void execute(Runnable task){
+            submit(Executors.callable(task));
+        }
+
+        /**
+         * Cancels every unfinished task in the scope, interrupting the ones
+         * that are running.
+         */
+
+        public void cancel(){
+            cancelled = true;
+            for(Task<?> t : tasks){
+                t.cancel(true);
+            }
+        }
+
+        /**
+         * Checks if the scope has been cancelled.
+         * @return True if it has, else returns false.
+         */
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Getter for the amount of unfinished tasks in the scope.
+         * @return The amount of unfinished tasks.
+         */
+
+        public int getPendingCount() {
+            return tasks.size();
+        }
+    }
+}
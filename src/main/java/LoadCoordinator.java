@@ -0,0 +1,248 @@
+import javax.swing.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <h1>LoadCoordinator</h1>
+ * Loads the channels the user chooses. Only the latest choice matters, so
+ * choosing a channel cancels the loads of the channels chosen before it,
+ * which interrupts their downloads. Choosing a channel that is already
+ * loading joins that load instead of starting another one. When a load is
+ * done its listener is called on the EDT, but only if no other channel
+ * has been chosen since.
+ * <p>
+ * rm - The model whose channels are loaded.
+ * <p>
+ * executor - Runs the loads.
+ * <p>
+ * prefetcher - Background warm-up that is paused while the user waits,
+ * or null.
+ * <p>
+ * loads - The loads that are running, keyed by channel.
+ * <p>
+ * latest - The number of the latest choice. A load only tells its listener
+ * if it still has this number when it is done.
+ * <p>
+ * started - The amount of loads that have been started.
+ * <p>
+ * coalesced - The amount of choices that joined a running load.
+ * <p>
+ * cancelled - The amount of loads cancelled by a later choice.
+ *
+ * @version 1.0
+ */
+
+public class LoadCoordinator {
+
+    /**
+     * Told when a chosen channel has been loaded.
+     */
+
+    public interface Listener {
+
+        /**
+         * Called on the EDT when the channel has been loaded, if it is still
+         * the latest choice.
+         * @param rc The loaded channel.
+         * @param image The channel image, or null if there is none.
+         */
+
+        void loaded(RadioChannel rc, ImageIcon image);
+    }
+
+    private final RadioModel rm;
+    private final IoExecutor executor;
+    private final SchedulePrefetcher prefetcher;
+    private final HashMap<RadioChannel, Load> loads;
+    private long latest;
+    private long started;
+    private long coalesced;
+    private long cancelled;
+
+    /**
+     * Creates a coordinator that loads on the shared IoExecutor.
+     * @param rm The model whose channels are loaded.
+     * @param prefetcher The warm-up to pause while the user waits, or null.
+     */
+
+    public LoadCoordinator(RadioModel rm, SchedulePrefetcher prefetcher){
+        this(rm, prefetcher, IoExecutor.getInstance());
+    }
+
+    /**
+     * Creates a coordinator that loads on the provided executor.
+     * @param rm The model whose channels are loaded.
+     * @param prefetcher The warm-up to pause while the user waits, or null.
+     * @param executor Runs the loads.
+     */
+
+    LoadCoordinator(RadioModel rm, SchedulePrefetcher prefetcher,
+                    IoExecutor executor){
+        this.rm = rm;
+        this.prefetcher = prefetcher;
+        this.executor = executor;
+        this.loads = new HashMap<RadioChannel, Load>();
+        this.latest = 0;
+        this.started = 0;
+        this.coalesced = 0;
+        this.cancelled = 0;
+    }
+
+    /**
+     * Loads a channel that the user has chosen, cancelling the loads of
+     * other channels. Joins the load of the channel if one is running.
+     * @param rc The chosen channel.
+     * @param listener Told when the channel is loaded, unless another
+     *                 channel is chosen first.
+     * @return The load, which is done when the channel is loaded.
+     */
+
+    public synchronized Future<?> load(RadioChannel rc, Listener listener){
+        latest++;
+        cancelOthers(rc);
+        Load load = loads.get(rc);
+        if(load == null){
+            load = new Load(rc);
+            loads.put(rc, load);
+            load.task = load.scope.submit(Executors.callable(load));
+            started++;
+        }else{
+            coalesced++;
+        }
+        load.listener = listener;
+        load.choice = latest;
+        return load.task;
+    }
+
+    /**
+     * Cancels all running loads, for when the user chooses no channel or
+     * the channel is about to be updated another way.
+     */
+
+    public synchronized void cancel(){
+        latest++;
+        cancelOthers(null);
+    }
+
+    /**
+     * Cancels every running load except the one of a channel.
+     * @param keep The channel whose load to keep, or null.
+     */
+
+    private void cancelOthers(RadioChannel keep){
+        Iterator<Map.Entry<RadioChannel, Load>> it =
+                loads.entrySet().iterator();
+        while(it.hasNext()){
+            Map.Entry<RadioChannel, Load> entry = it.next();
+            if(entry.getKey() != keep){
+                entry.getValue().scope.cancel();
+                it.remove();
+                cancelled++;
+            }
+        }
+    }
+
+    /**
+     * Forgets a load that is done and gets the listener to tell.
+     * @param load The load.
+     * @return The listener, or null if another channel has been chosen
+     * since the load's channel.
+     */
+
+    private synchronized Listener finish(Load load){
+        if(loads.get(load.rc) == load){
+            loads.remove(load.rc);
+        }
+        if(load.scope.isCancelled() || load.choice != latest){
+            return null;
+        }
+        return load.listener;
+    }
+
+    /**
+     * Getter for the amount of loads that have been started.
+     * @return The amount of started loads.
+     */
+
+    public synchronized long getStartedCount() {
+        return started;
+    }
+
+    /**
+     * Getter for the amount of choices that joined a running load.
+     * @return The amount of joined loads.
+     */
+
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /**
+     * Getter for the amount of loads cancelled by a later choice.
+     * @return The amount of cancelled loads.
+     */
+
+    public synchronized long getCancelledCount() {
+        return cancelled;
+    }
+
+    /**
+     * Getter for the amount of loads that are running.
+     * @return The amount of running loads.
+     */
+
+    public synchronized int getRunningCount() {
+        return loads.size();
+    }
+
+    /**
+     * The load of one channel. Downloads the schedule if it is out of date
+     * and waits for the channel image.
+     */
+
+    private class Load implements Runnable {
+        private final RadioChannel rc;
+        private final IoExecutor.Scope scope;
+        private Future<?> task;
+        private Listener listener;
+        private long choice;
+
+        Load(RadioChannel rc){
+            this.rc = rc;
+            this.scope = executor.newScope();
+        }
+
+        public void run() {
+            /*A load cancelled before it started neither pauses the warm-up
+            * nor waits for another load of the channel.*/
+            if(!Thread.currentThread().isInterrupted() && rm.isStale(rc)){
+                /*The user is waiting, so the warm-up steps aside.*/
+                if(prefetcher != null){
+                    prefetcher.pause();
+                }
+                try {
+                    rm.loadScheduleIfStale(rc);
+                } finally {
+                    if(prefetcher != null){
+                        prefetcher.resume();
+                    }
+                }
+            }
+            final ImageIcon image = Thread.currentThread().isInterrupted()
+                    ? null : rc.awaitImage();
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    /*Decided on the EDT, where the choices are made, so a
+                    * later choice can't slip in between.*/
+                    Listener told = finish(Load.this);
+                    if(told != null){
+                        told.loaded(rc, image);
+                    }
+                }
+            });
+        }
+    }
+}
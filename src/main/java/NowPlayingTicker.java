@@ -0,0 +1,130 @@
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+/**
+ * <h1>NowPlayingTicker</h1>
+ * Keeps the most recently ended program of the shown channel marked as
+ * time passes. Instead of polling, it wakes up when the next program of
+ * the shown channel starts or ends, marks the program again from the
+ * schedule that is already loaded and goes back to sleep until the next
+ * one. No downloading or parsing is done. Runs on the EDT.
+ * <p>
+ * listener - Told which program is marked.
+ * <p>
+ * timer - Wakes the ticker up at the next start or end.
+ * <p>
+ * channel - The channel shown, or null if none is.
+ * <p>
+ * nextWakeup - When the next start or end is, in milliseconds, or
+ * Long.MAX_VALUE if there is none.
+ *
+ * @version 1.0
+ */
+
+public class NowPlayingTicker {
+
+    /**
+     * Told which program is marked.
+     */
+
+    public interface Listener {
+
+        /**
+         * Called on the EDT when the channel is shown and every time a
+         * program starts or ends while it is.
+         * @param rc The shown channel.
+         * @param marked The number of the most recently ended program, or
+         *               -1 if none has ended.
+         */
+
+        void marked(RadioChannel rc, int marked);
+    }
+
+    /*Wakes up at least this often, in case the clock has been changed or
+    * the computer has been asleep.*/
+    private static final int MAX_WAIT = 10 * 60 * 1000;
+
+    private final Listener listener;
+    private final Timer timer;
+    private RadioChannel channel;
+    private long nextWakeup;
+
+    /**
+     * Creates a ticker that shows no channel.
+     * @param listener Told which program is marked.
+     */
+
+    public NowPlayingTicker(Listener listener){
+        this.listener = listener;
+        this.timer = new Timer(MAX_WAIT, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                tick(System.currentTimeMillis());
+            }
+        });
+        this.timer.setRepeats(false);
+        this.channel = null;
+        this.nextWakeup = Long.MAX_VALUE;
+    }
+
+    /**
+     * Starts following a channel, and marks its program right away.
+     * @param rc The channel shown, or null to stop.
+     */
+
+    public void show(RadioChannel rc){
+        channel = rc;
+        tick(System.currentTimeMillis());
+    }
+
+    /**
+     * Stops following the shown channel.
+     */
+
+    public void stop(){
+        show(null);
+    }
+
+    /**
+     * Marks the program of the shown channel and sleeps until the next
+     * start or end.
+     * @param now The current time in milliseconds.
+     */
+
+    void tick(long now){
+        timer.stop();
+        RadioChannel rc = channel;
+        if(rc == null){
+            nextWakeup = Long.MAX_VALUE;
+            return;
+        }
+        rc.markProgram(now);
+        listener.marked(rc, rc.getMarkedProgram());
+        nextWakeup = rc.getPrograms().nextBoundaryAfter(now);
+        if(nextWakeup != Long.MAX_VALUE){
+            /*A program that ends at a time has only ended after it.*/
+            timer.setInitialDelay((int) Math.max(0,
+                    Math.min(MAX_WAIT, nextWakeup - now + 1)));
+            timer.start();
+        }
+    }
+
+    /**
+     * Getter for when the ticker wakes up next.
+     * @return The time of the next start or end in milliseconds, or
+     * Long.MAX_VALUE if there is none.
+     */
+
+    public long getNextWakeup() {
+        return nextWakeup;
+    }
+
+    /**
+     * Checks if the ticker is waiting to wake up.
+     * @return True if it is, false if there is nothing to wait for.
+     */
+
+    public boolean isRunning() {
+        return timer.isRunning();
+    }
+}
@@ -0,0 +1,509 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <h1>ProgramSchedule</h1>
+ * The programs of a channel sorted by start time. Keeps an index of start
+ * times and of the latest end time so far, so that finding the program
+ * that is on or just ended is a binary search instead of a scan.
+ * <p>
+ * current - The snapshot of the programs and their index. A snapshot is
+ * never changed once it has been published, so readers take the current
+ * one without locking and see the programs as they were at that moment,
+ * even while a refresh replaces them.
+ * <p>
+ * Writers lock the schedule so that they don't lose each other's changes,
+ * and publish a new snapshot when they are done.
+ * <p>
+ * Programs are also looked up by name and by episode id through hash
+ * indexes. A snapshot builds them the first time it is asked, so a
+ * schedule that is only shown never pays for them.
+ *
+ * @version 1.0
+ */
+
+public class ProgramSchedule implements Iterable<RadioProgram> {
+
+    private static final Comparator<RadioProgram> BY_START =
+            new Comparator<RadioProgram>() {
+                public int compare(RadioProgram a, RadioProgram b) {
+                    return Long.compare(startOf(a), startOf(b));
+                }
+            };
+
+    private final AtomicReference<Snapshot> current;
+
+    public ProgramSchedule(){
+        this.current = new AtomicReference<Snapshot>(Snapshot.EMPTY);
+    }
+
+    /**
+     * Adds a program in start time order. Programs added in order are
+     * appended without searching or copying.
+     * @param rp The program to add.
+     */
+
+    public synchronized void add(RadioProgram rp){
+        Snapshot s = current.get();
+        if(s.size == 0 || s.starts[s.size - 1] <= startOf(rp)){
+            current.set(s.append(rp));
+        }else{
+            ArrayList<RadioProgram> list = s.toList();
+            list.add(s.upperBound(startOf(rp)), rp);
+            current.set(Snapshot.of(list));
+        }
+    }
+
+    /**
+     * Adds several programs and sorts the schedule once.
+     * @param list The programs to add.
+     */
+
+    public synchronized void addAll(Collection<RadioProgram> list){
+        ArrayList<RadioProgram> all = current.get().toList();
+        all.addAll(list);
+        Collections.sort(all, BY_START);
+        current.set(Snapshot.of(all));
+    }
+
+    /**
+     * Adds the programs that the schedule doesn't have yet and sorts the
+     * schedule once. A program is known by its episode id, or by its start
+     * time if it has none, as when schedules are merged.
+     * @param list The programs to add.
+     */
+
+    public synchronized void addAbsent(Collection<RadioProgram> list){
+        ArrayList<RadioProgram> all = current.get().toList();
+        HashSet<Object> known = new HashSet<Object>(all.size() * 2);
+        for(RadioProgram rp : all){
+            known.add(keyOf(rp));
+        }
+        for(RadioProgram rp : list){
+            if(known.add(keyOf(rp))){
+                all.add(rp);
+            }
+        }
+        Collections.sort(all, BY_START);
+        current.set(Snapshot.of(all));
+    }
+
+    /**
+     * Adds all programs of another schedule and sorts the schedule once.
+     * @param other The schedule whose programs to add.
+     */
+
+    public void addAll(ProgramSchedule other){
+        addAll(other.toList());
+    }
+
+    /**
+     * Copies the programs into a new list.
+     * @return The programs in start time order.
+     */
+
+    public ArrayList<RadioProgram> toList(){
+        return current.get().toList();
+    }
+
+    /**
+     * Replaces the programs with those of a refreshed schedule. A program
+     * is known by its episode id, or by its start time if it has none. A
+     * refreshed program with the same content as the one it replaces is
+     * dropped in favour of the old one, so the old instance keeps its
+     * image and formatted times, and programs listed twice in the refreshed
+     * schedule, such as ones running past midnight, are only kept once.
+     * @param fresh The refreshed schedule.
+     * @return True if the programs differ from before, false if nothing
+     * changed.
+     */
+
+    public boolean merge(ProgramSchedule fresh){
+        /*Reading the refreshed schedule takes no lock, so two schedules are
+        * never locked at once.*/
+        Snapshot incoming = fresh.current.get();
+        synchronized (this){
+            Snapshot s = current.get();
+            HashMap<Object, RadioProgram> old =
+                    new HashMap<Object, RadioProgram>(s.size * 2);
+            for(int i = 0; i < s.size; i++){
+                old.put(keyOf(s.programs[i]), s.programs[i]);
+            }
+            HashSet<Object> seen = new HashSet<Object>(incoming.size * 2);
+            ArrayList<RadioProgram> merged =
+                    new ArrayList<RadioProgram>(incoming.size);
+            boolean changed = false;
+            for(int j = 0; j < incoming.size; j++){
+                RadioProgram rp = incoming.programs[j];
+                Object key = keyOf(rp);
+                if(!seen.add(key)){
+                    continue;
+                }
+                RadioProgram previous = old.get(key);
+                if(previous != null && previous.hasSameContent(rp)){
+                    rp = previous;
+                }
+                int i = merged.size();
+                if(i >= s.size || s.programs[i] != rp){
+                    changed = true;
+                }
+                merged.add(rp);
+            }
+            if(merged.size() != s.size){
+                changed = true;
+            }
+            if(changed){
+                current.set(Snapshot.of(merged));
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Removes all programs.
+     */
+
+    public synchronized void clear(){
+        current.set(Snapshot.EMPTY);
+    }
+
+    /**
+     * Getter for the amount of programs.
+     * @return The amount of programs.
+     */
+
+    public int size(){
+        return current.get().size;
+    }
+
+    /**
+     * Gets the program at a position in start time order.
+     * @param index The position of the program.
+     * @return The program.
+     */
+
+    public RadioProgram get(int index){
+        Snapshot s = current.get();
+        if(index < 0 || index >= s.size){
+            throw new IndexOutOfBoundsException("Index: " + index +
+                    ", Size: " + s.size);
+        }
+        return s.programs[index];
+    }
+
+    /**
+     * Iterates the programs in start time order, as they were when the
+     * iteration started.
+     * @return A read only iterator.
+     */
+
+    public Iterator<RadioProgram> iterator(){
+        return view().iterator();
+    }
+
+    /**
+     * Gets the programs as they are now without copying them. The list
+     * doesn't change when the schedule does.
+     * @return A read only list of the programs in start time order.
+     */
+
+    public List<RadioProgram> view(){
+        Snapshot s = current.get();
+        return Collections.unmodifiableList(
+                Arrays.asList(s.programs).subList(0, s.size));
+    }
+
+    /**
+     * Gets the first program in start time order with a name.
+     * @param name The name of the program.
+     * @return The program, or null if there is none.
+     */
+
+    public RadioProgram getNamed(String name){
+        return current.get().lookup().byName.get(name);
+    }
+
+    /**
+     * Gets the program of an episode.
+     * @param episodeId The episode id of the program.
+     * @return The first program in start time order with the id, or null
+     * if there is none.
+     */
+
+    public RadioProgram getByEpisodeId(String episodeId){
+        return current.get().lookup().byEpisode.get(episodeId);
+    }
+
+    /**
+     * Finds the program that is on at the provided time.
+     * @param time The time in milliseconds.
+     * @return The index of the latest starting program that is on, or -1
+     * if nothing is on.
+     */
+
+    public int indexOfProgramOn(long time){
+        Snapshot s = current.get();
+        for(int i = s.upperBound(time) - 1; i >= 0 && s.maxEnds[i] > time;
+            i--){
+            if(endOf(s.programs[i]) > time){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the most recently ended program, meaning the last program in
+     * start time order that has ended before the provided time. Programs
+     * starting after the time can't have ended, so only the programs up to
+     * the last start are checked, and for an ordinary schedule the answer
+     * is one of the last two.
+     * @param time The time in milliseconds.
+     * @return The index of the program, or -1 if none has ended.
+     */
+
+    public int indexOfLastEnded(long time){
+        Snapshot s = current.get();
+        for(int i = s.upperBound(time) - 1; i >= 0; i--){
+            if(endOf(s.programs[i]) < time){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the next time after the provided one when a program starts or
+     * ends, which is when the program that is on or the most recently
+     * ended program may change. Only the programs that are on can end
+     * before the next start, so the rest are never looked at.
+     * @param time The time in milliseconds.
+     * @return The time of the next start or end in milliseconds, or
+     * Long.MAX_VALUE if nothing starts or ends after the time.
+     */
+
+    public long nextBoundaryAfter(long time){
+        Snapshot s = current.get();
+        int next = s.upperBound(time);
+        long boundary = next < s.size ? s.starts[next] : Long.MAX_VALUE;
+        for(int i = next - 1; i >= 0 && s.maxEnds[i] > time; i--){
+            long end = endOf(s.programs[i]);
+            if(end > time && end < boundary){
+                boundary = end;
+            }
+        }
+        return boundary;
+    }
+
+    /**
+     * Gets the programs starting within a time range.
+     * @param from The start of the range in milliseconds, inclusive.
+     * @param to The end of the range in milliseconds, exclusive.
+     * @return A copy of the programs in the range, in start time order.
+     */
+
+    public List<RadioProgram> slice(long from, long to){
+        Snapshot s = current.get();
+        int first = s.lowerBound(from);
+        int last = Math.max(first, s.lowerBound(to));
+        return new ArrayList<RadioProgram>(
+                Arrays.asList(s.programs).subList(first, last));
+    }
+
+    /**
+     * Removes all programs that don't start within a time range in one
+     * pass.
+     * @param from The start of the range in milliseconds, inclusive.
+     * @param to The end of the range in milliseconds, exclusive.
+     */
+
+    public synchronized void retainStartingBetween(long from, long to){
+        current.set(Snapshot.of(slice(from, to)));
+    }
+
+    /**
+     * Gets what a program is known by when schedules are merged.
+     * @param rp The program.
+     * @return The episode id, or the start time if there is no id.
+     */
+
+    private static Object keyOf(RadioProgram rp){
+        if(rp.getEpisodeId() != null){
+            return rp.getEpisodeId();
+        }
+        return Long.valueOf(startOf(rp));
+    }
+
+    private static long startOf(RadioProgram rp){
+        return rp.getStartMillis();
+    }
+
+    private static long endOf(RadioProgram rp){
+        return rp.getEndMillis();
+    }
+
+    /**
+     * The programs at one moment together with their index. Only the first
+     * size entries of the arrays belong to the snapshot. A program appended
+     * in order is written past them into spare room, so snapshots may share
+     * arrays without seeing each other's programs. The lookup by name and
+     * episode id is built when it is first needed. Two readers may both
+     * build it, which is harmless since they build the same thing.
+     */
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new RadioProgram[0],
+                new long[0], new long[0], 0);
+
+        final RadioProgram[] programs;
+        final long[] starts;
+        final long[] maxEnds;
+        final int size;
+        private volatile Lookup lookup;
+
+        Snapshot(RadioProgram[] programs, long[] starts, long[] maxEnds,
+                 int size){
+            this.programs = programs;
+            this.starts = starts;
+            this.maxEnds = maxEnds;
+            this.size = size;
+        }
+
+        /**
+         * Creates a snapshot of programs sorted by start time and indexes
+         * them.
+         * @param list The programs.
+         * @return The new snapshot.
+         */
+
+        static Snapshot of(List<RadioProgram> list){
+            int size = list.size();
+            RadioProgram[] programs = list.toArray(new RadioProgram[size]);
+            long[] starts = new long[size];
+            long[] maxEnds = new long[size];
+            long maxEnd = Long.MIN_VALUE;
+            for(int i = 0; i < size; i++){
+                starts[i] = startOf(programs[i]);
+                maxEnd = Math.max(maxEnd, endOf(programs[i]));
+                maxEnds[i] = maxEnd;
+            }
+            return new Snapshot(programs, starts, maxEnds, size);
+        }
+
+        /**
+         * Creates the snapshot with a program added last. Only called by
+         * the writer holding the schedule's lock, on the current snapshot,
+         * so nobody else writes past size.
+         * @param rp The program, starting no earlier than the last one.
+         * @return The new snapshot.
+         */
+
+        Snapshot append(RadioProgram rp){
+            RadioProgram[] p = programs;
+            long[] s = starts;
+            long[] m = maxEnds;
+            if(size == p.length){
+                int capacity = Math.max(8, size + (size >> 1));
+                p = Arrays.copyOf(p, capacity);
+                s = Arrays.copyOf(s, capacity);
+                m = Arrays.copyOf(m, capacity);
+            }
+            p[size] = rp;
+            s[size] = startOf(rp);
+            m[size] = size == 0 ? endOf(rp)
+                    : Math.max(m[size - 1], endOf(rp));
+            return new Snapshot(p, s, m, size + 1);
+        }
+
+        /**
+         * Gets the lookup by name and episode id, building it if needed.
+         * @return The lookup.
+         */
+
+        Lookup lookup(){
+            Lookup l = lookup;
+            if(l == null){
+                l = new Lookup(this);
+                lookup = l;
+            }
+            return l;
+        }
+
+        ArrayList<RadioProgram> toList(){
+            return new ArrayList<RadioProgram>(
+                    Arrays.asList(programs).subList(0, size));
+        }
+
+        /**
+         * Finds the first program starting at or after a time.
+         * @param time The time in milliseconds.
+         * @return The index of the program, or size if there is none.
+         */
+
+        int lowerBound(long time){
+            int low = 0;
+            int high = size;
+            while(low < high){
+                int mid = (low + high) >>> 1;
+                if(starts[mid] < time){
+                    low = mid + 1;
+                }else{
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Finds the first program starting after a time.
+         * @param time The time in milliseconds.
+         * @return The index of the program, or size if there is none.
+         */
+
+        int upperBound(long time){
+            int low = 0;
+            int high = size;
+            while(low < high){
+                int mid = (low + high) >>> 1;
+                if(starts[mid] <= time){
+                    low = mid + 1;
+                }else{
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Hash indexes of the programs of a snapshot. Where several programs
+     * share a key the first one in start time order is kept.
+     */
+
+    private static final class Lookup {
+        final HashMap<String, RadioProgram> byName;
+        final HashMap<String, RadioProgram> byEpisode;
+
+        Lookup(Snapshot s){
+            byName = new HashMap<String, RadioProgram>(s.size * 2);
+            byEpisode = new HashMap<String, RadioProgram>(s.size * 2);
+            for(int i = 0; i < s.size; i++){
+                RadioProgram rp = s.programs[i];
+                if(rp.getName() != null){
+                    byName.putIfAbsent(rp.getName(), rp);
+                }
+                if(rp.getEpisodeId() != null){
+                    byEpisode.putIfAbsent(rp.getEpisodeId(), rp);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <h1>ProgramTableModel</h1>
+ * Table model that shows the programs of a schedule. The cells are read
+ * from the programs when the table asks for them, so only the rows that
+ * are drawn are ever formatted, and showing another schedule doesn't copy
+ * anything. When the shown schedule is refreshed only the rows that were
+ * removed, added or replaced are reported to the table.
+ * <p>
+ * schedule - The schedule shown, or null if nothing is shown.
+ * <p>
+ * rows - The programs shown, as they were when the table was last told
+ * about them. Only used on the EDT.
+ *
+ * @version 1.0
+ */
+
+public class ProgramTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {"Program", "Start", "End"};
+
+    private ProgramSchedule schedule;
+    private List<RadioProgram> rows;
+
+    public ProgramTableModel(){
+        this.schedule = null;
+        this.rows = Collections.emptyList();
+    }
+
+    /**
+     * Shows a schedule. Showing another schedule replaces all rows, while
+     * showing the same schedule again only reports the rows that changed
+     * since it was last shown. Has to be called on the EDT.
+     * @param schedule The schedule to show, or null to show nothing.
+     */
+
+    public void setSchedule(ProgramSchedule schedule){
+        List<RadioProgram> fresh = schedule == null
+                ? Collections.<RadioProgram>emptyList() : schedule.view();
+        if(schedule != this.schedule){
+            this.schedule = schedule;
+            rows = fresh;
+            fireTableDataChanged();
+        }else if(schedule != null){
+            refresh(fresh);
+        }
+    }
+
+    /**
+     * Updates the rows to the refreshed programs of the shown schedule. Both
+     * lists are sorted by start time and unchanged programs are kept as the
+     * same instances, so walking them side by side finds the runs of rows
+     * that were removed, added or replaced. The rows are changed one run
+     * at a time and the table is told after every run, so it never sees
+     * rows that don't match what it has been told.
+     * @param fresh The refreshed programs.
+     */
+
+    private void refresh(List<RadioProgram> fresh){
+        ArrayList<RadioProgram> working = new ArrayList<RadioProgram>(rows);
+        rows = working;
+        int i = 0;
+        int j = 0;
+        while(i < working.size() || j < fresh.size()){
+            if(i >= working.size()){
+                working.addAll(fresh.subList(j, fresh.size()));
+                fireTableRowsInserted(i, working.size() - 1);
+                break;
+            }
+            if(j >= fresh.size()){
+                int end = working.size();
+                working.subList(i, end).clear();
+                fireTableRowsDeleted(i, end - 1);
+                break;
+            }
+            RadioProgram shown = working.get(i);
+            RadioProgram next = fresh.get(j);
+            if(shown == next){
+                i++;
+                j++;
+            }else if(shown.getStartMillis() < next.getStartMillis()){
+                int end = i;
+                while(end < working.size() && working.get(end)
+                        .getStartMillis() < next.getStartMillis()){
+                    end++;
+                }
+                working.subList(i, end).clear();
+                fireTableRowsDeleted(i, end - 1);
+            }else if(next.getStartMillis() < shown.getStartMillis()){
+                int end = j;
+                while(end < fresh.size() && fresh.get(end)
+                        .getStartMillis() < shown.getStartMillis()){
+                    end++;
+                }
+                working.addAll(i, fresh.subList(j, end));
+                fireTableRowsInserted(i, i + end - j - 1);
+                i += end - j;
+                j = end;
+            }else{
+                int count = 0;
+                while(i + count < working.size() && j + count < fresh.size()
+                        && working.get(i + count) != fresh.get(j + count)
+                        && working.get(i + count).getStartMillis() ==
+                        fresh.get(j + count).getStartMillis()){
+                    working.set(i + count, fresh.get(j + count));
+                    count++;
+                }
+                fireTableRowsUpdated(i, i + count - 1);
+                i += count;
+                j += count;
+            }
+        }
+        rows = fresh;
+    }
+
+    /**
+     * Getter for the schedule shown.
+     * @return The schedule, or null if nothing is shown.
+     */
+
+    public ProgramSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Gets the program shown on a row.
+     * @param row The row.
+     * @return The program.
+     */
+
+    public RadioProgram getProgramAt(int row){
+        return rows.get(row);
+    }
+
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    public Object getValueAt(int row, int column) {
+        RadioProgram rp = rows.get(row);
+        switch(column){
+            case 0:
+                return rp.getName();
+            case 1:
+                return rp.getFormattedStartTime();
+            default:
+                return rp.getFormattedEndTime();
+        }
+    }
+}
@@ -1,12 +1,11 @@
 import javax.swing.*;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * <h1>RadioChannel</h1>
@@ -20,11 +19,40 @@ import java.util.Date;
  * <p>
  * imageAddress - The address to the channel's image.
  * <p>
- * programs - An array of programs belonging to the channel.
+ * programs - The programs belonging to the channel, sorted by start time.
  * <p>
- * markedProgram - The number of the most recently expired program.
+ * markedProgram - The number of the most recently expired program, or -1
+ * if none has expired.
  * <p>
- * image - The image of the channel.
+ * imageUrl - The parsed image address, used to look the image up in the
+ * shared image cache.
+ * <p>
+ * loadedFrom - The start of the time range the programs were loaded for,
+ * in milliseconds.
+ * <p>
+ * loadedTo - The end of the time range the programs were loaded for, in
+ * milliseconds. The range is empty until a schedule has been loaded.
+ * <p>
+ * loadedDays - The programs of every downloaded day by the address of
+ * the day, all of them as the day's response listed them. A day that
+ * comes back unchanged is taken from here instead of being parsed again.
+ * <p>
+ * generation - The refresh generation of the model that the programs were
+ * last loaded in.
+ * <p>
+ * refreshedAt - When the programs were last loaded, in milliseconds, or 0
+ * if they never have been.
+ * <p>
+ * lastChangedAt - When a load last changed the programs, in milliseconds.
+ * <p>
+ * freshUntil - Until when the server said the loaded schedule stays
+ * fresh, in milliseconds, or 0 if it didn't say.
+ * <p>
+ * loadLock - Held while the schedule is loaded, so that only one thread
+ * at a time loads the channel.
+ * <p>
+ * The fields that change are volatile, since a channel is updated in the
+ * background while the view reads it on the EDT without locking.
  *
  * @author  Victor Gustafsson, dv16vgn
  * @version 1.0
@@ -32,59 +60,223 @@ import java.util.Date;
  */
 
 public class RadioChannel {
+    private static final long HOUR = 60L * 60 * 1000;
+
     private String name;
     private String id;
-    private String tablePageCount;
-    private String imageAddress;
-    private String description;
-    private ArrayList<RadioProgram> programs;
-    private int markedProgram;
-    private ImageIcon image;
+    private volatile String tablePageCount;
+    private volatile String imageAddress;
+    private volatile String description;
+    private ProgramSchedule programs;
+    private volatile int markedProgram;
+    private volatile URL imageUrl;
+    private volatile long loadedFrom;
+    private volatile long loadedTo;
+    private Map<String, List<RadioProgram>> loadedDays;
+    private volatile long generation;
+    private volatile long refreshedAt;
+    private volatile long lastChangedAt;
+    private volatile long freshUntil;
+    private final ReentrantLock loadLock;
 
     RadioChannel(String name, String id){
         this.name = name;
         this.id = id;
         this.tablePageCount = null;
         this.description = null;
-        this.programs = new ArrayList<RadioProgram>();
-        this.image = null;
+        this.programs = new ProgramSchedule();
+        this.imageUrl = null;
+        this.loadedFrom = 0;
+        this.loadedTo = 0;
+        this.loadedDays = Collections.emptyMap();
+        this.generation = 0;
+        this.refreshedAt = 0;
+        this.lastChangedAt = 0;
+        this.freshUntil = 0;
+        this.loadLock = new ReentrantLock();
     }
 
     /**
-     * Gets a program with the same name as the provided string.
+     * Gets a program with the same name as the provided string. Several
+     * programs may share a name, then the first one in start time order is
+     * returned.
      * @param name The name of the desired program.
      * @return The desired program. Returns null if it cannot be found.
      */
 
     public RadioProgram getRadioProgramNamed(String name){
-        for(RadioProgram rc: programs){
-            if(rc.getName().equals(name)){
-                return rc;
-            }
-        }
-        return null;
+        return programs.getNamed(name);
+    }
+
+    /**
+     * Gets the program of an episode.
+     * @param episodeId The episode id of the desired program.
+     * @return The desired program. Returns null if it cannot be found.
+     */
+
+    public RadioProgram getRadioProgramByEpisodeId(String episodeId){
+        return programs.getByEpisodeId(episodeId);
     }
 
     /**
      * Filters out programs that are outside of the time span when compared to
-     * currentTime.
+     * currentTime. Since the programs are sorted this keeps one slice of
+     * them instead of removing programs one by one.
      * @param timeSpan The amount of hours + 1 back in time and forward in
      *                time a program is allowed to be.
      * @param currentTime The current time to compare the programs to.
      */
 
     public void filterRadioPrograms(int timeSpan, Calendar currentTime){
-        int i = 0;
-        while (i<this.programs.size()){
-            RadioProgram rp = this.programs.get(i);
-            long hours = ChronoUnit.HOURS.between(currentTime.toInstant(),
-                    rp.getStartTime().toInstant());
-            if(hours < (-(timeSpan+1)) || hours > timeSpan){
-                this.programs.remove(i);
-            }else{
-                i++;
-            }
+        long now = currentTime.getTimeInMillis();
+        long from = windowStart(timeSpan, now);
+        long to = windowEnd(timeSpan, now);
+        programs.retainStartingBetween(from, to);
+        /*Filtering can only shrink the range the programs cover.*/
+        setLoadedWindow(Math.max(loadedFrom, from), Math.min(loadedTo, to));
+    }
+
+    /**
+     * Gets the start of the time span that filterRadioPrograms keeps.
+     * Whole hours between the current time and the start are allowed to be
+     * from -(timeSpan+1) to timeSpan, with the hours rounded towards zero,
+     * so both ends of the span are exclusive.
+     * @param timeSpan The time span in hours, see filterRadioPrograms.
+     * @param now The current time in milliseconds.
+     * @return The earliest start that is kept, in milliseconds.
+     */
+
+    public static long windowStart(int timeSpan, long now){
+        return now - (timeSpan + 2) * HOUR + 1;
+    }
+
+    /**
+     * Gets the end of the time span that filterRadioPrograms keeps.
+     * @param timeSpan The time span in hours, see filterRadioPrograms.
+     * @param now The current time in milliseconds.
+     * @return The first start that isn't kept, in milliseconds.
+     */
+
+    public static long windowEnd(int timeSpan, long now){
+        return now + (timeSpan + 1) * HOUR;
+    }
+
+    /**
+     * Setter for the time range the programs were loaded for.
+     * @param from The start of the range in milliseconds, inclusive.
+     * @param to The end of the range in milliseconds, exclusive.
+     */
+
+    public void setLoadedWindow(long from, long to){
+        this.loadedFrom = from;
+        this.loadedTo = Math.max(from, to);
+    }
+
+    /**
+     * Takes the programs of every day as the last successful load parsed
+     * them, leaving none. A load that fails before it sets new ones thus
+     * leaves nothing to reuse, so the next load parses every day. Only
+     * called holding the load lock.
+     * @return The programs of every day by the address of the day, in
+     * start time order.
+     */
+
+    public Map<String, List<RadioProgram>> takeLoadedDays(){
+        Map<String, List<RadioProgram>> days = loadedDays;
+        loadedDays = Collections.emptyMap();
+        return days;
+    }
+
+    /**
+     * Setter for the programs of every day as a load parsed them. Only
+     * called holding the load lock.
+     * @param loadedDays The programs of every day by the address of the
+     *                   day, in start time order.
+     */
+
+    public void setLoadedDays(Map<String, List<RadioProgram>> loadedDays) {
+        this.loadedDays = loadedDays;
+    }
+
+    /**
+     * Getter for the lock held while the schedule is loaded.
+     * @return The load lock.
+     */
+
+    public ReentrantLock getLoadLock() {
+        return loadLock;
+    }
+
+    /**
+     * Setter for the refresh generation the programs were loaded in.
+     * @param generation The model's refresh generation.
+     */
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Getter for the refresh generation the programs were loaded in.
+     * @return The refresh generation.
+     */
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Remembers a load of the programs, for deciding when to load them
+     * again.
+     * @param time When the programs were loaded, in milliseconds.
+     * @param changed True if the load changed the programs.
+     * @param freshUntil Until when the server said the schedule stays
+     *                   fresh, in milliseconds, or 0 if it didn't say.
+     */
+
+    public void recordRefresh(long time, boolean changed, long freshUntil){
+        if(changed || lastChangedAt == 0){
+            this.lastChangedAt = time;
         }
+        this.freshUntil = freshUntil;
+        this.refreshedAt = time;
+    }
+
+    /**
+     * Getter for when the programs were last loaded.
+     * @return The time in milliseconds, or 0 if they never have been.
+     */
+
+    public long getRefreshedAt() {
+        return refreshedAt;
+    }
+
+    /**
+     * Getter for when a load last changed the programs.
+     * @return The time in milliseconds, or 0 if they never have been
+     * loaded.
+     */
+
+    public long getLastChangedAt() {
+        return lastChangedAt;
+    }
+
+    /**
+     * Getter for until when the server said the schedule stays fresh.
+     * @return The time in milliseconds, or 0 if it didn't say.
+     */
+
+    public long getFreshUntil() {
+        return freshUntil;
+    }
+
+    /**
+     * Getter for the end of the time range the programs were loaded for.
+     * @return The time in milliseconds.
+     */
+
+    public long getLoadedTo() {
+        return loadedTo;
     }
 
     /**
@@ -93,41 +285,16 @@ public class RadioChannel {
      */
 
     public void markProgram(Calendar currentTime){
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd | HH:mm:ss");
-        Date date1;
-        Date date2;
-        int i = 0;
-
-        try {
-            date1 = sdf.parse(currentTime.get(Calendar.YEAR) + "-" +
-                    currentTime.get(Calendar.MONTH)  + "-" +
-                    currentTime.get(Calendar.DAY_OF_MONTH) + " | " +
-                    currentTime.get(Calendar.HOUR_OF_DAY) + ":" +
-                    currentTime.get(Calendar.MINUTE) + ":" +
-                    currentTime.get(Calendar.SECOND));
-            while(i<this.programs.size()){
-                RadioProgram rp = this.programs.get(i);
-                Calendar c2 = rp.getEndTime();
-                date2 = sdf.parse(c2.get(Calendar.YEAR) + "-" +
-                        c2.get(Calendar.MONTH)  + "-" +
-                        c2.get(Calendar.DAY_OF_MONTH) + " | " +
-                        c2.get(Calendar.HOUR_OF_DAY) + ":" +
-                        c2.get(Calendar.MINUTE) + ":" +
-                        c2.get(Calendar.SECOND));
-                if(date1.compareTo(date2) > 0){
-                    this.markedProgram = i;
-                }
-                i++;
-            }
-        } catch (ParseException e) {
-            /* Tells the user of the exception and sets the marked program
-            to 0.
-            */
-
-            JOptionPane.showMessageDialog(new JFrame(),
-                    "Failed to mark past programs.");
-            this.markedProgram = 0;
-        }
+        markProgram(currentTime.getTimeInMillis());
+    }
+
+    /**
+     * Marks the most recently ended program.
+     * @param time The current time in milliseconds.
+     */
+
+    public void markProgram(long time){
+        this.markedProgram = programs.indexOfLastEnded(time);
     }
 
     /**
@@ -198,7 +365,7 @@ public class RadioChannel {
      * @return The programs of the channel.
      */
 
-    public ArrayList<RadioProgram> getPrograms() {
+    public ProgramSchedule getPrograms() {
         return programs;
     }
 
@@ -221,14 +388,16 @@ public class RadioChannel {
     }
 
     /**
-     * Downloads an image and sets it to the channel if the address is legit.
+     * Starts downloading an image for the channel if the address is legit.
+     * Returns right away, the image is available from getImage once the
+     * download is done.
      */
 
     public void downloadImage() {
         if(imageAddress != null){
             try {
-                URL address = new URL(imageAddress);
-                image = new ImageIcon(address);
+                imageUrl = new URL(imageAddress);
+                ImageLoader.getInstance().load(imageUrl);
             } catch (MalformedURLException e) {
                 /*Do nothing, as a null image will be replaced by
                  the default image in the view.*/
@@ -237,12 +406,34 @@ public class RadioChannel {
     }
 
     /**
-     * Getter for the channel image.
-     * @return The channel image.
+     * Getter for the address of the channel image.
+     * @return The address, or null if the channel has no legit address.
+     */
+
+    public URL getImageUrl() {
+        return imageUrl;
+    }
+
+    /**
+     * Getter for the channel image. Does not wait for the download.
+     * @return The channel image, or null if it isn't in the image cache.
      */
 
     public ImageIcon getImage() {
-        return image;
+        return ImageLoader.getInstance().getCached(imageUrl);
+    }
+
+    /**
+     * Waits until the channel image is downloaded, downloading it again if it
+     * has been evicted from the image cache. Should not be called on the EDT.
+     * @return The channel image, or null if there is none.
+     */
+
+    public ImageIcon awaitImage() {
+        if(imageUrl == null){
+            return null;
+        }
+        return ImageLoader.await(ImageLoader.getInstance().load(imageUrl));
     }
 
     /**
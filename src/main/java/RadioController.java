@@ -1,8 +1,8 @@
 import javax.swing.*;
 import java.awt.event.*;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <h1>RadioController</h1>
@@ -12,9 +12,10 @@ import java.util.TimerTask;
  * <p>
  * rm - The RadioModel.
  * <p>
- * timer - The update timer. It's meant to go off every hour.
+ * scheduler - Refreshes every loaded channel when it needs it.
  * <p>
- * currentChannelName - The name of the currently selected channel.
+ * currentChannelName - The name of the currently selected channel. Set on
+ * the EDT and read by the updates.
  * <p>
  * comboBoxShouldBeBlocked - Boolean saying if the combo box's actions
  * should be blocked.
@@ -22,12 +23,23 @@ import java.util.TimerTask;
  * cellTableShouldBeBlocked - Boolean saying if the table's actions
  * should be blocked.
  * <p>
- * updateIsHappening - Boolean making sure only onleone update can r
- * un at a time.
+ * updateIsHappening - Boolean making sure only one update can run at a
+ * time. Claimed with compare and set, since the menu can be used again
+ * before the update has started.
  * <p>
  * updateChannel - The channel to update.
  * <p>
  * loadingImage - The image used to tell the user the program is loading.
+ * <p>
+ * loadingAddress - The address of the loading image.
+ * <p>
+ * prefetcher - Background warm-up of all channel schedules. Null if it
+ * isn't turned on.
+ * <p>
+ * loads - Loads the channels the user chooses, cancelling the loads of
+ * channels chosen before.
+ * <p>
+ * ticker - Moves the marked row of the shown channel as programs end.
  *
  * @author  Victor Gustafsson, dv16vgn
  * @version 1.0
@@ -37,67 +49,117 @@ import java.util.TimerTask;
 public class RadioController {
     private RadioView rv;
     private RadioModel rm;
-    private Timer timer = new Timer();
-    private String currentChannelName;
-    private boolean comboBoxShouldBeBlocked;
-    private boolean cellTableShouldBeBlocked;
-    private boolean updateIsHappening;
-    private RadioChannel updateChannel;
+    private RefreshScheduler scheduler;
+    private volatile String currentChannelName;
+    private final AtomicBoolean comboBoxShouldBeBlocked;
+    private final AtomicBoolean cellTableShouldBeBlocked;
+    private final AtomicBoolean updateIsHappening;
+    private volatile RadioChannel updateChannel;
     private ImageIcon loadingImage;
+    private URL loadingAddress;
+    private SchedulePrefetcher prefetcher;
+    private LoadCoordinator loads;
+    private NowPlayingTicker ticker;
 
     public RadioController(RadioView rv, RadioModel rm) {
         this.rv = rv;
         this.rm = rm;
-        timer.scheduleAtFixedRate(new UpdateTask(), 3600000, 3600000);
         this.currentChannelName = "";
-        this.comboBoxShouldBeBlocked = false;
-        this.cellTableShouldBeBlocked = false;
-        this.updateIsHappening = false;
+        this.comboBoxShouldBeBlocked = new AtomicBoolean(false);
+        this.cellTableShouldBeBlocked = new AtomicBoolean(false);
+        this.updateIsHappening = new AtomicBoolean(false);
         this.updateChannel = null;
         this.loadingImage  = new ImageIcon(
                 "src/main/resources/loading.png");
+        this.loadingAddress = RadioView.addressOf(
+                "src/main/resources/loading.png");
         this.rv.updateComboBoxContent(rm.getRadioChannels());
         this.rv.addMouseListenerToTable(new CellListener());
         this.rv.addClickListenerToMenuItem(0, new MenuItemListener());
         this.rv.addClickListenerToMenuItem(1, new MenuItemListener());
         this.rv.addComboBoxItemListener(new ComboItemListener());
+        if(SchedulePrefetcher.isEnabled()){
+            this.prefetcher = new SchedulePrefetcher(rm);
+            this.prefetcher.start();
+        }
+        this.loads = new LoadCoordinator(rm, prefetcher);
+        this.ticker = new NowPlayingTicker(new NowPlayingTicker.Listener() {
+            public void marked(RadioChannel rc, int marked) {
+                rv.setMarkedRow(marked);
+            }
+        });
+        this.scheduler = new RefreshScheduler(rm, new RefreshListener());
+        this.scheduler.start();
+        showDownloadError();
+    }
 
+    /**
+     * Tells the user about the latest failed download, if there is one.
+     * The program keeps running with older or cached data, so this is only
+     * a notice. Has to be called on the EDT.
+     */
+
+    private void showDownloadError(){
+        String error = rm.pollError();
+        if(error != null){
+            JOptionPane.showMessageDialog(rv, error + " Showing the latest" +
+                    " data that could be loaded.");
+        }
     }
 
     /**
      * Listener for the table cells that displays radio program information.
+     * The image of a program is waited for on the IoExecutor. Clicking
+     * another program cancels the wait for the previous one.
      */
 
     class CellListener extends MouseAdapter {
-        String pressedProgram;
-        RadioProgram rp;
+        private IoExecutor.Scope cellLoad;
 
         public void mousePressed(MouseEvent e){
-            if(!cellTableShouldBeBlocked){
-                pressedProgram = rv.getTable().getModel().getValueAt
-                        (rv.getTable().getSelectedRow(), 0).toString();
-                new CellWorker().execute();
+            if(!cellTableShouldBeBlocked.get()){
+                /*The row is resolved to the program it shows, since
+                * several programs may share a title.*/
+                RadioProgram rp = rv.getProgramAt(
+                        rv.getTable().getSelectedRow());
+                if(rp == null){
+                    return;
+                }
+                if(cellLoad != null){
+                    cellLoad.cancel();
+                }
+                cellLoad = IoExecutor.getInstance().newScope();
+                cellLoad.execute(new CellWorker(rp, cellLoad));
             }
 
         }
 
-        class CellWorker extends SwingWorker{
-            @Override
-            protected Integer doInBackground(){
-                rp = rm.getCurrentChannel().
-                        getRadioProgramNamed(pressedProgram);
-                return 0;
+        class CellWorker implements Runnable {
+            private final RadioProgram rp;
+            private final IoExecutor.Scope scope;
+
+            CellWorker(RadioProgram rp, IoExecutor.Scope scope){
+                this.rp = rp;
+                this.scope = scope;
             }
-            protected void done(){
-                rv.changeTextAreaText(rp.getDescription());
-                rv.changeImage(rp.getImage());
+
+            public void run(){
+                final ImageIcon image = rp.awaitImage();
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if(!scope.isCancelled()){
+                            rv.changeTextAreaText(rp.getDescription());
+                            rv.changeImage(image, rp.getImageUrl());
+                        }
+                    }
+                });
             }
         }
     }
 
     /**
      * Listener for the menu that either displays the about screen or updates
-     * the table and resets the timer.
+     * the table.
      */
 
     class MenuItemListener implements ActionListener{
@@ -107,133 +169,171 @@ public class RadioController {
             if(s.equals("About")){
                 JOptionPane.showMessageDialog(null, "RadioInfo - " +
                         "By Victor Gustafsson.");
-            }else if (s.equals("Update") && !updateIsHappening){
+            }else if (s.equals("Update") && !updateIsHappening.get()){
 
-                Thread t = new Thread(new Runnable() {
+                IoExecutor.getInstance().execute(new Runnable() {
                     public void run() {
                         update();
                     }
                 });
-                t.start();
-
-                timer.cancel();
-                timer = new Timer();
-                timer.scheduleAtFixedRate(new UpdateTask(), 3600000, 3600000);
-                updateIsHappening = false;
             }
         }
     }
 
     /**
      * Listener for the combo box that downloads table data if necessary
-     * and then swaps to the desired channel.
+     * and then swaps to the desired channel. The loads go through the
+     * coordinator, so only the latest choice is shown.
      */
 
     class ComboItemListener implements ItemListener {
 
         public void itemStateChanged(ItemEvent itemEvent) {
             if (itemEvent.getStateChange() == ItemEvent.SELECTED &&
-                    !comboBoxShouldBeBlocked) {
+                    !comboBoxShouldBeBlocked.get()) {
 
                 Object item = itemEvent.getItem();
                 currentChannelName = item.toString();
-                cellTableShouldBeBlocked = true;
+                cellTableShouldBeBlocked.set(true);
                 if(currentChannelName.equals("")){
+                    loads.cancel();
+                    ticker.stop();
                     rv.updateProgramTable(null);
-                    rv.changeImage(null);
+                    rv.changeImage(null, null);
                     rv.changeTextAreaText("");
                 }else{
-                    rv.changeImage(loadingImage);
+                    rv.changeImage(loadingImage, loadingAddress);
                     rv.changeTextAreaText("");
-                    new ComboWorker().execute();
+                    RadioChannel rc = rm.getRadioChannelByNameOf(
+                            currentChannelName);
+                    rm.setCurrentChannel(rc);
+                    loads.load(rc, new ChannelShower());
                 }
             }
         }
 
-        class ComboWorker extends SwingWorker<Integer, Integer> {
+        /**
+         * Shows a channel once it has been loaded.
+         */
 
-            @Override
-            protected Integer doInBackground() {
-                rm.setCurrentChannel(rm.getRadioChannelByNameOf(
-                        currentChannelName));
-                if(rm.getCurrentChannel().getPrograms().size()==0){
-                    rm.addTablePagesCount(rm.getCurrentChannel());
-                    rm.updateSchedule(rm.getCurrentChannel());
-                }
-                return 0;
-            }
+        class ChannelShower implements LoadCoordinator.Listener {
 
-            protected void done(){
-                if(!currentChannelName.equals("")){
-                    rv.changeImage(rm.getCurrentChannel().getImage());
-                    if(rm.getCurrentChannel().hasDescription()){
-                        rv.changeTextAreaText(rm.getCurrentChannel().
-                                getDescription());
-                    }
-                    rv.updateProgramTable(rm.getCurrentChannel().
-                            getPrograms());
-                    rv.setMarkedRow(rm.getCurrentChannel().
-                            getMarkedProgram());
+            public void loaded(RadioChannel rc, ImageIcon image){
+                rv.changeImage(image, rc.getImageUrl());
+                if(rc.hasDescription()){
+                    rv.changeTextAreaText(rc.getDescription());
                 }
-                cellTableShouldBeBlocked = false;
+                rv.updateProgramTable(rc.getPrograms());
+                ticker.show(rc);
+                cellTableShouldBeBlocked.set(false);
+                showDownloadError();
             }
         }
     }
 
     /**
-     * A timerTask that runs an update.
+     * Shows the programs of the shown channel again when the scheduler has
+     * refreshed it in the background. Refreshes of other channels are only
+     * kept in the model.
      */
 
-    class UpdateTask extends TimerTask {
-        public void run() {
-            update();
+    class RefreshListener implements RefreshScheduler.Listener {
+
+        public void refreshed(RadioChannel rc, boolean changed) {
+            if(updateIsHappening.get() ||
+                    !rv.isShowingSchedule(rc.getPrograms())){
+                return;
+            }
+            if(changed){
+                rv.updateProgramTable(rc.getPrograms());
+            }
+            ticker.show(rc);
+            showDownloadError();
         }
     }
 
     /**
-     * Scraps all table data and updates the current channel. Blocks the
-     * combo box and table so they can't be triggered during an update. If the
-     * empty channel is chosen, then nothing is actually updated, only cleared.
+     * Refreshes the current channel and marks the other channels as out of
+     * date, so they keep their programs and are refreshed when they are
+     * selected next. Blocks the combo box and table so they can't be
+     * triggered during an update. The table is only rebuilt if the
+     * programs changed or it doesn't show the channel, and is unblocked
+     * once it shows it. If the empty channel is chosen, then nothing is
+     * refreshed right away. Returns right away if another update is
+     * running.
      */
 
     public void update(){
-        comboBoxShouldBeBlocked = true;
-        cellTableShouldBeBlocked = true;
-        updateIsHappening = true;
-        for (RadioChannel rc : rm.getRadioChannels()){
-            rc.getPrograms().clear();
+        if(!updateIsHappening.compareAndSet(false, true)){
+            return;
         }
-        if(!currentChannelName.equals("")){
-            updateChannel = rm.getRadioChannelByNameOf(currentChannelName);
-            rm.setCurrentChannel(updateChannel);
-            try {
-                SwingUtilities.invokeAndWait(new Runnable() {
+        /*True once unblocking the table is left to the EDT, which does it
+        * after the table shows the refreshed channel.*/
+        boolean tableHandedOver = false;
+        try {
+            comboBoxShouldBeBlocked.set(true);
+            cellTableShouldBeBlocked.set(true);
+            final String channelName = currentChannelName;
+            if(prefetcher != null){
+                prefetcher.cancel();
+            }
+            /*The update loads the current channel itself.*/
+            loads.cancel();
+            rm.requestRefresh();
+            if(!channelName.equals("")){
+                updateChannel = rm.getRadioChannelByNameOf(channelName);
+                rm.setCurrentChannel(updateChannel);
+                final ImageIcon image = updateChannel.awaitImage();
+                final URL address = updateChannel.getImageUrl();
+                try {
+                    SwingUtilities.invokeAndWait(new Runnable() {
+                        public void run() {
+                            rv.getComboBox().setSelectedItem(channelName);
+                            if(rm.getCurrentChannel().hasDescription()){
+                                rv.changeTextAreaText(rm.getCurrentChannel().
+                                        getDescription());
+                            }else{
+                                rv.changeTextAreaText("");
+                            }
+
+                            rv.changeImage(image, address);
+                        }
+                    });
+                } catch (Exception e) {
+                /*Tells the user that there's an issue with the update*/
+                    JOptionPane.showMessageDialog(new JFrame(),
+                            "Update failed. Please restart the program if the" +
+                                    " problem persists." +
+                                    "- " + e.getClass().getSimpleName());
+                }
+                final RadioChannel refreshed = updateChannel;
+                final boolean changed = rm.updateSchedule(refreshed);
+                SwingUtilities.invokeLater(new Runnable() {
                     public void run() {
-                        rv.getComboBox().setSelectedItem(currentChannelName);
-                        if(rm.getCurrentChannel().hasDescription()){
-                            rv.changeTextAreaText(rm.getCurrentChannel().
-                                    getDescription());
-                        }else{
-                            rv.changeTextAreaText("");
+                        /*Cancelling the loads may have cancelled showing
+                        * the channel, so the table can still show the
+                        * previous one.*/
+                        if(changed || !rv.isShowingSchedule(
+                                refreshed.getPrograms())){
+                            rv.updateProgramTable(refreshed.getPrograms());
                         }
-
-                        rv.changeImage(rm.getCurrentChannel().getImage());
+                        ticker.show(refreshed);
+                        cellTableShouldBeBlocked.set(false);
+                        showDownloadError();
                     }
                 });
-            } catch (Exception e) {
-            /*Tells the user that there's an issue with the update*/
-                JOptionPane.showMessageDialog(new JFrame(),
-                        "Update failed. Please restart the program if the" +
-                                " problem persists." +
-                                "- " + e.getClass().getSimpleName());
+                tableHandedOver = true;
+            }
+            if(prefetcher != null){
+                prefetcher.start();
+            }
+        } finally {
+            comboBoxShouldBeBlocked.set(false);
+            if(!tableHandedOver){
+                cellTableShouldBeBlocked.set(false);
             }
-            rm.addTablePagesCount(updateChannel);
-            rm.updateSchedule(updateChannel);
-            rv.updateProgramTable(rm.getCurrentChannel().getPrograms());
+            updateIsHappening.set(false);
         }
-        comboBoxShouldBeBlocked = false;
-        cellTableShouldBeBlocked = false;
-        updateIsHappening = false;
     }
 
 }
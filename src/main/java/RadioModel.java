@@ -1,11 +1,28 @@
 
-import javax.swing.*;
 import org.xml.sax.InputSource;
-import java.net.URL;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 /**
  * <h1>RadioModel</h1>
@@ -13,17 +30,38 @@ import java.util.Calendar;
  * <p>
  * parser - An XML parser that provides the model with data.
  * <p>
- * radioChannels - An array of channels.
+ * radioChannels - The channels. Copied on write, so readers such as the
+ * view iterate them without locking while the channels are loaded.
  * <p>
- * currentChannel - The current channel.
+ * channelsById - The channels by id. Kept in step with radioChannels.
  * <p>
- * channelPagesCount - The amount of channel pages.
+ * channelsByName - The channels by name. Where several channels share a
+ * name the first one is kept, as a search of radioChannels would find.
+ * <p>
+ * currentChannel - The current channel, set on the EDT and read by the
+ * background threads.
  * <p>
- * currentTime - The current time as a Calendar.
+ * channelPagesCount - The amount of channel pages.
  * <p>
  * channelAddress - The address to the channels.
  * <p>
  * programsAddress - The address to the programs.
+ * <p>
+ * fetchPool - Bounded pool of threads that parses downloaded pages. The
+ * downloads themselves don't take a thread while they wait.
+ * <p>
+ * fetcher - Downloads through the disk cache of API responses, retrying
+ * failures and falling back on cached responses when the API is down.
+ * <p>
+ * schedulePageSize - How many programs to ask for per schedule page. "all"
+ * turns pagination off, a number sets the page size and anything else
+ * uses the API default.
+ * <p>
+ * lastError - Description of the latest failed download that the user
+ * hasn't been told about, or null.
+ * <p>
+ * generation - Counts the refreshes that have been asked for. A channel
+ * loaded in an older generation is out of date.
  *
  * @author  Victor Gustafsson, dv16vgn
  * @version 1.0
@@ -32,14 +70,30 @@ import java.util.Calendar;
 
 public class RadioModel {
 
+    /**
+     * System property that sets the schedule page size, see
+     * setSchedulePageSize.
+     */
+    public static final String PAGE_SIZE_PROPERTY =
+            "radioinfo.schedule.pagesize";
+
+    private static final int FETCH_THREADS = 4;
+    private static final int SCHEDULE_HOURS = 11;
+
     private XMLDataParser parser;
-    private ArrayList<RadioChannel> radioChannels;
-    private RadioChannel currentChannel;
+    private final CopyOnWriteArrayList<RadioChannel> radioChannels;
+    private final ConcurrentHashMap<String, RadioChannel> channelsById;
+    private final ConcurrentHashMap<String, RadioChannel> channelsByName;
+    private volatile RadioChannel currentChannel;
     private String channelPagesCount;
-    private Calendar currentTime;
     private String channelsAddress = "http://api.sr.se/api/v2/channels/";
     private String programsAddress = "http://api.sr.se/api/v2/" +
             "scheduledepisodes?";
+    private ExecutorService fetchPool;
+    private ApiFetcher fetcher;
+    private String schedulePageSize;
+    private AtomicReference<String> lastError;
+    private AtomicLong generation;
 
     /**
      * Standard constructor that creates a RadioModel that downloads
@@ -48,8 +102,14 @@ public class RadioModel {
 
     public RadioModel(){
         parser = new XMLDataParser();
-        radioChannels= new ArrayList<RadioChannel>();
-        addChannelPagesCount();
+        radioChannels= new CopyOnWriteArrayList<RadioChannel>();
+        channelsById = new ConcurrentHashMap<String, RadioChannel>();
+        channelsByName = new ConcurrentHashMap<String, RadioChannel>();
+        fetchPool = createFetchPool();
+        fetcher = new ApiFetcher(new HttpCache());
+        schedulePageSize = System.getProperty(PAGE_SIZE_PROPERTY, "all");
+        lastError = new AtomicReference<String>();
+        generation = new AtomicLong();
         addRadioChannels();
     }
 
@@ -60,149 +120,621 @@ public class RadioModel {
 
     public RadioModel(int i){
         parser = new XMLDataParser();
-        radioChannels= new ArrayList<RadioChannel>();
+        radioChannels= new CopyOnWriteArrayList<RadioChannel>();
+        channelsById = new ConcurrentHashMap<String, RadioChannel>();
+        channelsByName = new ConcurrentHashMap<String, RadioChannel>();
+        fetchPool = createFetchPool();
+        fetcher = new ApiFetcher(new HttpCache());
+        schedulePageSize = System.getProperty(PAGE_SIZE_PROPERTY, "all");
+        lastError = new AtomicReference<String>();
+        generation = new AtomicLong();
     }
 
     /**
-     * Checks the API for the amount of channel pages.
+     * Special constructor that creates an empty RadioModel which talks to
+     * another server than the API. Used for testing against stub servers.
+     * @param channelsAddress The address to the channels.
+     * @param programsAddress The address to the programs, ending with "?".
+     * @param httpCache The cache to download through.
      */
 
-    private void addChannelPagesCount() {
-        try {
-            URL url = new URL(channelsAddress);
-            InputSource source = new InputSource(url.openStream());
-            channelPagesCount = parser.getChannelPagesCountFromSource(source);
+    RadioModel(String channelsAddress, String programsAddress,
+               HttpCache httpCache){
+        this(0);
+        this.channelsAddress = channelsAddress;
+        this.programsAddress = programsAddress;
+        this.fetcher = new ApiFetcher(httpCache);
+    }
 
-        } catch (Exception e) {
-            /*Tells the user that there's an issue with the address
-            * and quits the program since it needs data from the API.*/
-            JOptionPane.showMessageDialog(new JFrame(),
-                    "Channel address issue. Download of channel pages " +
-                            "count failed. - " + e.getClass().getSimpleName());
-            System.exit(1);
-        }
+    /**
+     * Setter for the schedule page size.
+     * @param schedulePageSize "all" to ask for the whole schedule of a day
+     *                         in one response, a number to ask for pages of
+     *                         that size, anything else for the API default.
+     */
+
+    public void setSchedulePageSize(String schedulePageSize) {
+        this.schedulePageSize = schedulePageSize;
     }
 
     /**
-     * Checks the API for the amount of program table pages for
-     * the provided channel and puts it in the channel.
-     * @param radioChannel The channel to check.
+     * Builds the query parameters for the schedule page size.
+     * @return The parameters to add to a schedule address.
      */
 
-    public void addTablePagesCount(RadioChannel radioChannel){
+    private String pageSizeParameters(){
+        if("all".equalsIgnoreCase(schedulePageSize)){
+            return "&pagination=false";
+        }
         try {
-            URL url = new URL(programsAddress +
-                    "channelid=" + radioChannel.getId());
-            InputSource source = new InputSource(url.openStream());
-            parser.getChannelTableCountFromSource(source, radioChannel);
-        } catch (Exception e) {
-            /*Tells the user that there's an issue with the address
-            * and quits the program since it needs data from the API.*/
-            JOptionPane.showMessageDialog(new JFrame(),
-                    "Program address issue. Download of table pages count" +
-                            " failed. - " + e.getClass().getSimpleName());
-            System.exit(1);
+            int size = Integer.parseInt(schedulePageSize);
+            if(size > 0){
+                return "&size=" + size;
+            }
+        } catch (NumberFormatException e) {
+            /*Falls through to the API default.*/
         }
+        return "";
     }
 
     /**
-     * Adds radio channels to the RadioModel.
+     * Creates the bounded pool used for concurrent page downloads. The
+     * threads are daemons so an idle pool never keeps the program alive.
+     * @return The new pool.
+     */
+
+    private static ExecutorService createFetchPool(){
+        return Executors.newFixedThreadPool(FETCH_THREADS,
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "radio-fetch-" +
+                                count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+
+    /**
+     * Remembers a failed download so that the user can be told about it.
+     * @param what What was being downloaded.
+     * @param e The failure.
+     */
+
+    private void reportError(String what, Exception e){
+        Throwable cause = e;
+        while((cause instanceof ExecutionException ||
+                cause instanceof CompletionException) &&
+                cause.getCause() != null){
+            cause = cause.getCause();
+        }
+        lastError.set("Download of " + what + " failed. - " +
+                cause.getClass().getSimpleName());
+    }
+
+    /**
+     * Takes the latest failed download that the user hasn't been told
+     * about.
+     * @return A description of the failure, or null if there is none.
+     */
+
+    public String pollError(){
+        return lastError.getAndSet(null);
+    }
+
+    /**
+     * Wraps a downloaded body in a new InputSource, decompressing it while
+     * the parser reads it if it is gzipped.
+     * @param response The downloaded response.
+     * @return An InputSource reading the body.
+     * @throws IOException If the body can't be decompressed.
+     */
+
+    private static InputSource sourceOf(HttpCache.Response response)
+            throws IOException {
+        return new InputSource(response.openStream());
+    }
+
+    /**
+     * Adds radio channels to the RadioModel. The first page is used for both
+     * the page count and the first channels, the rest of the pages are
+     * downloaded concurrently and merged in page order. Every page is
+     * published in one step, so the list is copied once per page rather
+     * than once per channel. If a page fails the channels of the pages
+     * before it are kept.
      */
 
     private void addRadioChannels(){
         try {
-            URL url = new URL(channelsAddress);
-            InputSource source = new InputSource(url.openStream());
-            parser.getRadioChannelsFromSource(source, radioChannels);
+            ArrayList<RadioChannel> first = new ArrayList<RadioChannel>();
+            channelPagesCount = parser.getRadioChannelsAndPagesCountFromSource(
+                    sourceOf(fetcher.fetch(channelsAddress)), first);
+            addChannels(first);
             int i = Integer.parseInt(channelPagesCount);
-            int j = 2;
-            while(j <= i){
-                url = new URL(channelsAddress + "?page=" + j);
-                source = new InputSource(url.openStream());
-                parser.getRadioChannelsFromSource(source, radioChannels);
-                j++;
+            ArrayList<Future<ArrayList<RadioChannel>>> pages =
+                    new ArrayList<Future<ArrayList<RadioChannel>>>();
+            for(int j = 2; j <= i; j++){
+                pages.add(fetcher.fetchAsync(channelsAddress + "?page=" + j)
+                        .thenApplyAsync(new ChannelPageParser(), fetchPool));
+            }
+            for(Future<ArrayList<RadioChannel>> page : pages){
+                addChannels(page.get());
             }
         } catch (Exception e) {
-            /*Tells the user that there's an issue with the address
-            * and quits the program since it needs data from the API.*/
-            JOptionPane.showMessageDialog(new JFrame(),
-                    "Channel address issue. Download of radio channels" +
-                            " failed. - " + e.getClass().getSimpleName());
-            System.exit(1);
+            /*Keeps running with the channels that could be downloaded,
+            * the controller tells the user.*/
+            reportError("radio channels", e);
+        }
+    }
+
+    /**
+     * Parses one downloaded page of channels.
+     */
+
+    private class ChannelPageParser
+            implements Function<HttpCache.Response, ArrayList<RadioChannel>>{
+
+        public ArrayList<RadioChannel> apply(HttpCache.Response response) {
+            ArrayList<RadioChannel> page = new ArrayList<RadioChannel>();
+            try {
+                parser.getRadioChannelsFromSource(sourceOf(response), page);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Loads the schedule of a channel unless it already has programs. Only
+     * one thread at a time loads a channel, so a channel that is already
+     * loading is waited for instead of downloaded twice. The wait can be
+     * interrupted, which leaves the channel as it is.
+     * @param radioChannel The channel to load.
+     */
+
+    public void loadScheduleIfEmpty(RadioChannel radioChannel){
+        ReentrantLock lock = radioChannel.getLoadLock();
+        if(!lockLoad(lock)){
+            return;
+        }
+        try {
+            if(radioChannel.getPrograms().size() == 0){
+                updateLockedSchedule(radioChannel, Calendar.getInstance());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads the schedule of a channel if it has no programs or hasn't been
+     * refreshed since the latest requestRefresh. Like loadScheduleIfEmpty a
+     * channel that is already loading is waited for.
+     * @param radioChannel The channel to load.
+     */
+
+    public void loadScheduleIfStale(RadioChannel radioChannel){
+        ReentrantLock lock = radioChannel.getLoadLock();
+        if(!lockLoad(lock)){
+            return;
+        }
+        try {
+            if(isStale(radioChannel)){
+                updateLockedSchedule(radioChannel, Calendar.getInstance());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the load lock of a channel, waiting for a load that is already
+     * running. The lock is used instead of the channel's monitor since the
+     * loads run on virtual threads, which a monitor would pin to their
+     * carrier thread while the load waits for its downloads, and since a
+     * thread waiting for a monitor can't be interrupted. A thread that is
+     * interrupted right as it gets the lock gives it back, since its load
+     * has been cancelled.
+     * @param lock The load lock of the channel.
+     * @return True if the lock was taken, false if the thread was
+     * interrupted, which is kept set.
+     */
+
+    private static boolean lockLoad(ReentrantLock lock){
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if(Thread.currentThread().isInterrupted()){
+            lock.unlock();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the schedules of all channels as out of date without throwing
+     * them away. Every channel keeps showing its programs and is refreshed
+     * the next time it is loaded with loadScheduleIfStale.
+     */
+
+    public void requestRefresh(){
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Checks if a channel needs its schedule loaded.
+     * @param radioChannel The channel to check.
+     * @return True if it has no programs or hasn't been refreshed since the
+     * latest requestRefresh, else returns false.
+     */
+
+    public boolean isStale(RadioChannel radioChannel){
+        return radioChannel.getPrograms().size() == 0 ||
+                radioChannel.getGeneration() < generation.get();
+    }
+
+    /**
+     * Refreshes the programs surrounding the current time in the provided
+     * channel. Only the days that the kept time span touches are
+     * downloaded, concurrently, and all their pages are revalidated
+     * against the cache. A day where no page has changed is taken from the
+     * programs that were parsed from the same day's address last time,
+     * all of them as the day's response listed them, so only the days
+     * that have changed, or that the time span has moved into, are parsed.
+     * A day's response doesn't start at local midnight, so a day can't be
+     * cut out of the kept programs by start time. The result is merged into
+     * the channel by episode id. If the download fails the channel keeps
+     * the programs it had, and the failure can be taken with pollError.
+     * A load of the channel that is already running is waited for, and if
+     * the wait is interrupted nothing is refreshed.
+     * @param radioChannel The channel to refresh.
+     * @return True if the programs changed, false if they are the same as
+     * before or couldn't be downloaded.
+     */
+
+    public boolean updateSchedule(RadioChannel radioChannel){
+        return updateSchedule(radioChannel, Calendar.getInstance());
+    }
+
+    /**
+     * Refreshes the programs of a channel as if it was the provided time,
+     * see updateSchedule.
+     * @param radioChannel The channel to refresh.
+     * @param now The current time.
+     * @return True if the programs changed, else returns false.
+     */
+
+    boolean updateSchedule(RadioChannel radioChannel, Calendar now){
+        ReentrantLock lock = radioChannel.getLoadLock();
+        if(!lockLoad(lock)){
+            return false;
+        }
+        try {
+            return updateLockedSchedule(radioChannel, now);
+        } finally {
+            lock.unlock();
         }
     }
 
     /**
-     * Adds programs surrounding the current time to the provided channel
-     * and filters them.
-     * @param radioChannel The channel to add programs to.
+     * Does the work of updateSchedule while holding the channel's load
+     * lock.
+     * @param radioChannel The channel to refresh.
+     * @param now The current time.
+     * @return True if the programs changed, else returns false.
      */
 
-    public void updateSchedule(RadioChannel radioChannel){
-        currentTime = Calendar.getInstance();
+    private boolean updateLockedSchedule(RadioChannel radioChannel,
+                                         Calendar now){
+        long refresh = generation.get();
+        long time = now.getTimeInMillis();
+        long from = RadioChannel.windowStart(SCHEDULE_HOURS, time);
+        long to = RadioChannel.windowEnd(SCHEDULE_HOURS, time);
         String address = programsAddress + "channelid="
                 + radioChannel.getId();
-        String date = "";
         DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-        for(int i=0; i<3; i++){
-            switch (i){
-                case 0:
-                    currentTime.add(Calendar.DAY_OF_MONTH, -1);
-                    date = df.format(currentTime.getTime());
-                    break;
-                case 1:
-                    currentTime.add(Calendar.DAY_OF_MONTH, 1);
-                    date = df.format(currentTime.getTime());
-                    break;
-                case 2:
-                    currentTime.add(Calendar.DAY_OF_MONTH, 1);
-                    date = df.format(currentTime.getTime());
-                    break;
+
+        /*The days the kept time span touches, and where the last ends.*/
+        ArrayList<Calendar> dayStarts = scheduleDays(now);
+        int days = dayStarts.size() - 1;
+        ArrayList<String> dayAddresses = new ArrayList<String>();
+        int today = 0;
+        for(int i=0; i<days; i++){
+            if(dayStarts.get(i).getTimeInMillis() <= time){
+                today = i;
+            }
+            dayAddresses.add(address + "&date=" +
+                    df.format(dayStarts.get(i).getTime()) +
+                    pageSizeParameters());
+        }
+
+        /*The days as they were last parsed. Until this load succeeds the
+        * channel has none, since the cache may end up with pages newer
+        * than them.*/
+        Map<String, List<RadioProgram>> previous =
+                radioChannel.takeLoadedDays();
+        boolean changed;
+        ArrayList<CompletableFuture<HttpCache.Response>> downloads =
+                new ArrayList<CompletableFuture<HttpCache.Response>>();
+        try {
+            /*First pages of all days at once, since they tell how many
+            * more pages there are. Only the parsing takes a pool thread.*/
+            ArrayList<Future<SchedulePage>> firstPages =
+                    new ArrayList<Future<SchedulePage>>();
+            for(String dayAddress : dayAddresses){
+                CompletableFuture<HttpCache.Response> download =
+                        fetcher.fetchAsync(dayAddress);
+                downloads.add(download);
+                firstPages.add(download.thenApplyAsync(
+                        new FirstPageParser(radioChannel), fetchPool));
+            }
+
+            /*Then the rest of the pages of all days at once.*/
+            ArrayList<SchedulePage> firsts = new ArrayList<SchedulePage>();
+            ArrayList<ArrayList<CompletableFuture<HttpCache.Response>>> rests =
+                    new ArrayList<ArrayList<
+                            CompletableFuture<HttpCache.Response>>>();
+            for(int i=0; i<days; i++){
+                SchedulePage first = firstPages.get(i).get();
+                firsts.add(first);
+                rests.add(fetchRemainingPages(dayAddresses.get(i),
+                        first.pageCount));
+                downloads.addAll(rests.get(i));
+            }
+            radioChannel.setTablePageCount(
+                    Integer.toString(firsts.get(today).pageCount));
+
+            ProgramSchedule fresh = new ProgramSchedule();
+            HashMap<String, List<RadioProgram>> loaded =
+                    new HashMap<String, List<RadioProgram>>();
+            ArrayList<List<RadioProgram>> reused =
+                    new ArrayList<List<RadioProgram>>();
+            for(int i=0; i<days; i++){
+                ArrayList<SchedulePage> pages = new ArrayList<SchedulePage>();
+                pages.add(firsts.get(i));
+                for(CompletableFuture<HttpCache.Response> page
+                        : rests.get(i)){
+                    pages.add(new SchedulePage(page.get()));
+                }
+                List<RadioProgram> day = previous.get(dayAddresses.get(i));
+                if(day != null && allUnchanged(pages)){
+                    reused.add(day);
+                }else{
+                    ProgramSchedule parsed = new ProgramSchedule();
+                    for(SchedulePage page : pages){
+                        parsed.addAll(page.getPrograms(radioChannel));
+                    }
+                    day = parsed.view();
+                    fresh.addAll(day);
+                }
+                loaded.put(dayAddresses.get(i), day);
             }
-            addSchedule(address + "&date=" + date, radioChannel);
+            /*A program listed by two days is taken from a day that was
+            * parsed now, so an old copy never wins over a new one.*/
+            for(List<RadioProgram> day : reused){
+                fresh.addAbsent(day);
+            }
+            fresh.retainStartingBetween(from, to);
+            changed = radioChannel.getPrograms().merge(fresh);
+            radioChannel.setLoadedWindow(from, to);
+            radioChannel.setLoadedDays(loaded);
+            radioChannel.setGeneration(refresh);
+            radioChannel.recordRefresh(time, changed, freshUntil(downloads));
+        } catch (InterruptedException e) {
+            /*The load was cancelled, which isn't an error. The requests
+            * still running are cancelled with it.*/
+            for(CompletableFuture<HttpCache.Response> download : downloads){
+                download.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            /*Keeps the programs the channel had, so a failed download only
+            * means that the schedule is older. The controller tells the
+            * user.*/
+            reportError("programs", e);
+            changed = false;
         }
-        Calendar c = Calendar.getInstance();
-        radioChannel.filterRadioPrograms(11, c);
-        c = Calendar.getInstance();
-        radioChannel.markProgram(c);
+        radioChannel.markProgram(now);
+        return changed;
     }
 
     /**
-     * Adds programs from the provided address to the provided channel.
-     * @param address The address to the programs.
-     * @param radioChannel the channel to add programs to.
+     * Gets the days that the kept time span touches at a time. That is two
+     * days, or three around noon.
+     * @param now The current time.
+     * @return The midnight starting each day, followed by the midnight
+     * ending the last one.
      */
 
-    private void addSchedule(String address, RadioChannel radioChannel){
-        try {
-            URL url = new URL(address);
-            InputSource source = new InputSource(url.openStream());
-            parser.getRadioProgramsFromSource(source, radioChannel);
-            int i = Integer.parseInt(radioChannel.getTablePageCount());
-            int j = 2;
-            while(j <= i){
-                url = new URL(address + "&page=" + j);
-                source = new InputSource(url.openStream());
-                parser.getRadioProgramsFromSource(source, radioChannel);
-                j++;
+    static ArrayList<Calendar> scheduleDays(Calendar now){
+        long time = now.getTimeInMillis();
+        long to = RadioChannel.windowEnd(SCHEDULE_HOURS, time);
+        Calendar day = (Calendar) now.clone();
+        day.setTimeInMillis(RadioChannel.windowStart(SCHEDULE_HOURS, time));
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        ArrayList<Calendar> days = new ArrayList<Calendar>();
+        while(true){
+            days.add((Calendar) day.clone());
+            if(day.getTimeInMillis() >= to){
+                return days;
             }
-        } catch (Exception e) {
-            /*Tells the user that there's an issue with the address
-            * and quits the program since it needs data from the API.*/
-            JOptionPane.showMessageDialog(new JFrame(),
-                    "Program address issue. Download of programs" +
-                            " failed. - " + e.getClass().getSimpleName());
-            System.exit(1);
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
+    /**
+     * Gets until when the server said all downloaded pages stay fresh.
+     * @param downloads The finished downloads.
+     * @return The earliest time a page stops being fresh in milliseconds,
+     * or 0 if the server didn't say for some page.
+     */
+
+    private static long freshUntil(
+            ArrayList<CompletableFuture<HttpCache.Response>> downloads){
+        long until = Long.MAX_VALUE;
+        for(CompletableFuture<HttpCache.Response> download : downloads){
+            HttpCache.Response response = download.getNow(null);
+            if(response == null || response.getExpires() == 0){
+                return 0;
+            }
+            until = Math.min(until, response.getExpires());
         }
+        return until == Long.MAX_VALUE ? 0 : until;
     }
 
     /**
-     * Getter for the ArrayList of Radio Channels.
-     * @return The ArrayList of Radio Channels.
+     * Checks if every page was a 304 or a stale copy of the cached page.
+     * @param pages The pages to check.
+     * @return True if no page has changed, else returns false.
      */
 
-    public ArrayList<RadioChannel> getRadioChannels() {
-        return radioChannels;
+    private static boolean allUnchanged(ArrayList<SchedulePage> pages){
+        for(SchedulePage page : pages){
+            if(!isUnchanged(page.response)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a response has the same body as the cached one.
+     * @param response The response to check.
+     * @return True if it was a 304 or served from the cache.
+     */
+
+    private static boolean isUnchanged(HttpCache.Response response){
+        return response.isNotModified() || response.isStale();
+    }
+
+    /**
+     * Starts downloading page 2 and onwards of a schedule day.
+     * @param address The address to the programs of the day.
+     * @param pageCount The amount of pages the day has.
+     * @return The downloads in page order.
+     */
+
+    private ArrayList<CompletableFuture<HttpCache.Response>>
+            fetchRemainingPages(String address, int pageCount){
+        ArrayList<CompletableFuture<HttpCache.Response>> rest =
+                new ArrayList<CompletableFuture<HttpCache.Response>>();
+        for(int j = 2; j <= pageCount; j++){
+            rest.add(fetcher.fetchAsync(address + "&page=" + j));
+        }
+        return rest;
+    }
+
+    /**
+     * Parses the first program page of a schedule day. The page gives
+     * both the amount of pages and its programs in one pass. If the page
+     * hasn't changed since it was cached, or the cached page is served
+     * because the API is down, only the amount of pages is read.
+     */
+
+    private class FirstPageParser
+            implements Function<HttpCache.Response, SchedulePage> {
+        private final RadioChannel radioChannel;
+
+        FirstPageParser(RadioChannel radioChannel){
+            this.radioChannel = radioChannel;
+        }
+
+        public SchedulePage apply(HttpCache.Response response) {
+            SchedulePage first = new SchedulePage(response);
+            RadioChannel target = new RadioChannel(radioChannel.getName(),
+                    radioChannel.getId());
+            String count;
+            try {
+                if(isUnchanged(response)){
+                    parser.getChannelTableCountFromSource(
+                            sourceOf(response), target);
+                    count = target.getTablePageCount();
+                }else{
+                    count = parser.getRadioProgramsAndTableCountFromSource(
+                            sourceOf(response), target);
+                    first.parsed = target;
+                }
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            /*Unpaginated responses have no pagination block.*/
+            first.pageCount = count == null ? 1 : Integer.parseInt(count);
+            return first;
+        }
+    }
+
+    /**
+     * A downloaded page of programs that is parsed the first time its
+     * programs are needed.
+     */
+
+    private class SchedulePage {
+        private final HttpCache.Response response;
+        private RadioChannel parsed;
+        private int pageCount;
+
+        SchedulePage(HttpCache.Response response){
+            this.response = response;
+        }
+
+        /**
+         * Gets the programs of the page, parsing them if needed.
+         * @param radioChannel The channel the programs belong to.
+         * @return The programs of the page.
+         * @throws IOException If the page can't be parsed.
+         */
+
+        ProgramSchedule getPrograms(RadioChannel radioChannel)
+                throws IOException {
+            if(parsed == null){
+                parsed = new RadioChannel(radioChannel.getName(),
+                        radioChannel.getId());
+                parser.getRadioProgramsFromSource(sourceOf(response), parsed);
+            }
+            return parsed.getPrograms();
+        }
+    }
+
+    /**
+     * Adds channels after the ones already there and indexes them. The
+     * indexes are filled in before the channels are published, so a
+     * channel that can be iterated can also be looked up.
+     * @param channels The channels to add.
+     */
+
+    synchronized void addChannels(List<RadioChannel> channels){
+        for(RadioChannel rc : channels){
+            if(rc.getId() != null){
+                channelsById.putIfAbsent(rc.getId(), rc);
+            }
+            if(rc.getName() != null){
+                channelsByName.putIfAbsent(rc.getName(), rc);
+            }
+        }
+        radioChannels.addAll(channels);
+    }
+
+    /**
+     * Getter for the Radio Channels. The list may be iterated while it is
+     * changed, the iteration sees the channels as they were when it
+     * started. Channels are added through addChannels, so that they are
+     * indexed.
+     * @return A read only list of the Radio Channels.
+     */
+
+    public List<RadioChannel> getRadioChannels() {
+        return Collections.unmodifiableList(radioChannels);
     }
 
     /**
@@ -212,12 +744,26 @@ public class RadioModel {
      */
 
     public RadioChannel getRadioChannelByNameOf(String name){
-        for(RadioChannel rc : radioChannels){
-            if(rc.getName().equals(name)){
-                return rc;
-            }
-        }
-        return null;
+        return name == null ? null : channelsByName.get(name);
+    }
+
+    /**
+     * Gets a channel by its id.
+     * @param id The id of the desired channel.
+     * @return The desired channel. Returns null if it cannot be found.
+     */
+
+    public RadioChannel getRadioChannelById(String id){
+        return id == null ? null : channelsById.get(id);
+    }
+
+    /**
+     * Getter for the fetcher, which keeps the download metrics.
+     * @return The fetcher.
+     */
+
+    public ApiFetcher getFetcher() {
+        return fetcher;
     }
 
     public XMLDataParser getParser() {
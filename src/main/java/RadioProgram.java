@@ -1,9 +1,12 @@
 import javax.swing.*;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
+import java.util.Objects;
+import java.util.TimeZone;
 
 /**
  * <h1>RadioProgram</h1>
@@ -11,6 +14,9 @@ import java.util.Calendar;
  * <p>
  * name - The name of the program.
  * <p>
+ * episodeId - The id of the scheduled episode, or null if the API didn't
+ * give one.
+ * <p>
  * description - The description of the program.
  * <p>
  * imageAddress - The address of the program's image.
@@ -19,11 +25,24 @@ import java.util.Calendar;
  * <p>
  * endString - String version of the program's end time.
  * <p>
- * startTime - Calendar version of the program's start time.
+ * startMillis - The program's start time in milliseconds since the epoch.
+ * <p>
+ * endMillis - The program's end time in milliseconds since the epoch.
+ * <p>
+ * startTime - Calendar version of the program's start time, made the first
+ * time it is asked for.
+ * <p>
+ * endTime - Calendar version of the program's end time, made the first time
+ * it is asked for.
+ * <p>
+ * formattedStart - The formatted start time, made the first time it is
+ * asked for.
  * <p>
- * endTime - Calendar version of the program's end time.
+ * formattedEnd - The formatted end time, made the first time it is asked
+ * for.
  * <p>
- * image - The image of the program.
+ * imageUrl - The parsed image address, used to look the image up in the
+ * shared image cache.
  *
  * @author  Victor Gustafsson, dv16vgn
  * @version 1.0
@@ -31,74 +50,156 @@ import java.util.Calendar;
  */
 
 public class RadioProgram {
+
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("MM/dd | HH:mm:ss");
+    private static final TimeZone ZONE = TimeZone.getDefault();
+    private static final ZoneId ZONE_ID = ZONE.toZoneId();
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
     private String name;
+    private String episodeId;
     private String description;
     private String imageAddress;
     private String startString;
     private String endString;
+    private long startMillis;
+    private long endMillis;
     private Calendar startTime;
     private Calendar endTime;
-    private ImageIcon image;
+    private String formattedStart;
+    private String formattedEnd;
+    private URL imageUrl;
 
     public RadioProgram(String name){
         this.name = name;
+        this.episodeId = null;
         this.description = null;
         this.imageAddress = null;
         this.startString = null;
         this.endString = null;
-        this.startTime = Calendar.getInstance();
-        this.startTime.set(Calendar.MILLISECOND, 0);
-        this.endTime = Calendar.getInstance();
-        this.endTime.set(Calendar.MILLISECOND, 0);
-        image = null;
+        this.startMillis = System.currentTimeMillis() / 1000 * 1000;
+        this.endMillis = startMillis;
+        this.imageUrl = null;
     }
 
     /**
-     * Parses the string versions of the start and end times into a Calendar
-     * each.
+     * Parses the string versions of the start and end times into
+     * milliseconds.
      */
 
     public void parseDates(){
-        String[] startPieces = startString.split("T");
-        parseYMD(startPieces[0], startTime);
-        parseHMS(startPieces[1], startTime);
-
-        String[] endPieces = endString.split("T");
-        parseYMD(endPieces[0], endTime);
-        parseHMS(endPieces[1], endTime);
+        startMillis = parseTime(startString);
+        endMillis = parseTime(endString);
+        startTime = null;
+        endTime = null;
+        formattedStart = null;
+        formattedEnd = null;
     }
 
     /**
-     * Parses the Year, Month and Days of the string into the Calendar.
-     * @param ymd The string to be parsed.
-     * @param c The Calendar that will contain the parsed data.
+     * Parses a time on the form yyyy-MM-ddTHH:mm:ss, optionally followed by
+     * fractions of a second and a Z, by scanning the characters without
+     * making any objects. The fields are read as local time, the same way
+     * they have always been shown.
+     * @param s The string to be parsed.
+     * @return The time in milliseconds since the epoch.
+     * @throws IllegalArgumentException If the string isn't such a time.
      */
 
-    private void parseYMD(String ymd, Calendar c){
-        String[] pieces = ymd.split("-");
-        int year = Integer.parseInt(pieces[0]);
-        int month = Integer.parseInt(pieces[1]);
-        int day = Integer.parseInt(pieces[2]);
-        month--;
+    static long parseTime(String s){
+        int year = digits(s, 0, 4);
+        expect(s, 4, '-');
+        int month = digits(s, 5, 2);
+        expect(s, 7, '-');
+        int day = digits(s, 8, 2);
+        expect(s, 10, 'T');
+        int hour = digits(s, 11, 2);
+        expect(s, 13, ':');
+        int minute = digits(s, 14, 2);
+        expect(s, 16, ':');
+        int second = digits(s, 17, 2);
+
+        int i = 19;
+        if(i < s.length() && s.charAt(i) == '.'){
+            i++;
+            while(i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9'){
+                i++;
+            }
+        }
+        if(i < s.length() && s.charAt(i) == 'Z'){
+            i++;
+        }
+        if(i != s.length() || month < 1 || month > 12 || day < 1 ||
+                day > 31 || hour > 23 || minute > 59 || second > 60){
+            throw new IllegalArgumentException("Bad time: " + s);
+        }
 
-        c.set(Calendar.YEAR, year);
-        c.set(Calendar.MONTH, month);
-        c.set(Calendar.DAY_OF_MONTH, day);
+        long local = daysFromCivil(year, month, day) * DAY +
+                hour * 3600000L + minute * 60000L + second * 1000L;
+        /*Guess the offset from the standard one, then correct it with the
+         offset in use at the guessed time, which handles summer time.*/
+        long millis = local - ZONE.getOffset(local - ZONE.getRawOffset());
+        int offset = ZONE.getOffset(millis);
+        return local - offset;
+    }
+
+    /**
+     * Reads a fixed amount of decimal digits.
+     * @param s The string to read from.
+     * @param from The position of the first digit.
+     * @param count The amount of digits.
+     * @return The number.
+     * @throws IllegalArgumentException If there aren't enough digits.
+     */
+
+    private static int digits(String s, int from, int count){
+        if(s.length() < from + count){
+            throw new IllegalArgumentException("Bad time: " + s);
+        }
+        int value = 0;
+        for(int i = from; i < from + count; i++){
+            int d = s.charAt(i) - '0';
+            if(d < 0 || d > 9){
+                throw new IllegalArgumentException("Bad time: " + s);
+            }
+            value = value * 10 + d;
+        }
+        return value;
     }
 
     /**
-     * Parses the Hour, Minute and Second of the string into the Calendar.
-     * @param hms The string to be parsed.
-     * @param c The Calendar that will contain the parsed data.
+     * Checks that a separator is where it should be.
+     * @param s The string to check.
+     * @param at The position of the separator.
+     * @param c The expected separator.
+     * @throws IllegalArgumentException If the separator is missing.
      */
 
-    private void parseHMS(String hms, Calendar c){
-        String[] pieces = hms.split(":");
+    private static void expect(String s, int at, char c){
+        if(s.length() <= at || s.charAt(at) != c){
+            throw new IllegalArgumentException("Bad time: " + s);
+        }
+    }
+
+    /**
+     * Counts the days from 1970-01-01 to a date in the Gregorian calendar.
+     * @param year The year.
+     * @param month The month, 1 to 12.
+     * @param day The day of the month.
+     * @return The amount of days, negative before 1970.
+     */
 
-        c.set(Calendar.HOUR_OF_DAY, Integer.parseInt(pieces[0]));
-        c.set(Calendar.MINUTE, Integer.parseInt(pieces[1]));
-        pieces[2] = pieces[2].substring(0, pieces[2].length() - 1);
-        c.set(Calendar.SECOND, Integer.parseInt(pieces[2]));
+    private static long daysFromCivil(int year, int month, int day){
+        /*Counts years from March so that the leap day is last.*/
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 +
+                day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 +
+                dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
     }
 
     /**
@@ -110,6 +211,41 @@ public class RadioProgram {
         return name;
     }
 
+    /**
+     * Setter for the episode id of the program.
+     * @param episodeId The new episode id.
+     */
+
+    public void setEpisodeId(String episodeId) {
+        this.episodeId = episodeId;
+    }
+
+    /**
+     * Getter for the episode id of the program.
+     * @return The episode id, or null if there is none.
+     */
+
+    public String getEpisodeId() {
+        return episodeId;
+    }
+
+    /**
+     * Checks if another program shows the same thing as this one, so that
+     * a refreshed schedule can keep this program instead of the new copy.
+     * @param other The program to compare to.
+     * @return True if the episode, name, description, image and times are
+     * the same, else returns false.
+     */
+
+    public boolean hasSameContent(RadioProgram other){
+        return startMillis == other.startMillis &&
+                endMillis == other.endMillis &&
+                Objects.equals(episodeId, other.episodeId) &&
+                Objects.equals(name, other.name) &&
+                Objects.equals(description, other.description) &&
+                Objects.equals(imageAddress, other.imageAddress);
+    }
+
     /**
      * Setter for the description of the program.
      * @param description The new description of the program.
@@ -155,12 +291,33 @@ public class RadioProgram {
         this.endString = endString;
     }
 
+    /**
+     * Getter for the start time in milliseconds since the epoch.
+     * @return The start time in milliseconds.
+     */
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Getter for the end time in milliseconds since the epoch.
+     * @return The end time in milliseconds.
+     */
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
     /**
      * Getter for the start time as a Calendar.
      * @return The start time as a Calendar.
      */
 
     public Calendar getStartTime() {
+        if(startTime == null){
+            startTime = toCalendar(startMillis);
+        }
         return startTime;
     }
 
@@ -170,6 +327,9 @@ public class RadioProgram {
      */
 
     public Calendar getEndTime() {
+        if(endTime == null){
+            endTime = toCalendar(endMillis);
+        }
         return endTime;
     }
 
@@ -179,8 +339,10 @@ public class RadioProgram {
      */
 
     public String getFormattedStartTime(){
-        DateFormat df = new SimpleDateFormat("MM/dd | HH:mm:ss");
-        return (df.format(startTime.getTime()));
+        if(formattedStart == null){
+            formattedStart = format(startMillis);
+        }
+        return formattedStart;
     }
 
     /**
@@ -189,19 +351,45 @@ public class RadioProgram {
      */
 
     public String getFormattedEndTime(){
-        DateFormat df = new SimpleDateFormat("MM/dd | HH:mm:ss");
-        return (df.format(endTime.getTime()));
+        if(formattedEnd == null){
+            formattedEnd = format(endMillis);
+        }
+        return formattedEnd;
     }
 
     /**
-     * Downloads an image and sets it to the program if the address is legit.
+     * Makes a Calendar for a time.
+     * @param millis The time in milliseconds.
+     * @return A new Calendar set to the time.
+     */
+
+    private static Calendar toCalendar(long millis){
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(millis);
+        return c;
+    }
+
+    /**
+     * Formats a time as shown in the program table.
+     * @param millis The time in milliseconds.
+     * @return The formatted time.
+     */
+
+    private static String format(long millis){
+        return FORMAT.format(Instant.ofEpochMilli(millis).atZone(ZONE_ID));
+    }
+
+    /**
+     * Starts downloading an image for the program if the address is legit.
+     * Returns right away, the image is available from getImage once the
+     * download is done.
      */
 
     public void downloadImage() {
         if(imageAddress != null){
             try {
-                URL address = new URL(imageAddress);
-                image = new ImageIcon(address);
+                imageUrl = new URL(imageAddress);
+                ImageLoader.getInstance().load(imageUrl);
             } catch (MalformedURLException e) {
                 /*Do nothing, as a null image will be replaced by
                  the default image in the view.*/
@@ -210,11 +398,33 @@ public class RadioProgram {
     }
 
     /**
-     * Getter for the program image.
-     * @return The program image.
+     * Getter for the address of the program image.
+     * @return The address, or null if the program has no legit address.
+     */
+
+    public URL getImageUrl() {
+        return imageUrl;
+    }
+
+    /**
+     * Getter for the program image. Does not wait for the download.
+     * @return The program image, or null if it isn't in the image cache.
      */
 
     public ImageIcon getImage() {
-        return image;
+        return ImageLoader.getInstance().getCached(imageUrl);
+    }
+
+    /**
+     * Waits until the program image is downloaded, downloading it again if it
+     * has been evicted from the image cache. Should not be called on the EDT.
+     * @return The program image, or null if there is none.
+     */
+
+    public ImageIcon awaitImage() {
+        if(imageUrl == null){
+            return null;
+        }
+        return ImageLoader.await(ImageLoader.getInstance().load(imageUrl));
     }
 }
@@ -1,11 +1,15 @@
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemListener;
 import java.awt.event.MouseAdapter;
-import java.util.ArrayList;
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 /**
  * <h1>TestingView</h1>
@@ -27,7 +31,8 @@ import java.util.ArrayList;
  * <p>
  * info - Text area for program descriptions.
  * <p>
- * picLabel - Space for channel or program image.
+ * picLabel - Space for channel or program image. The same label is kept
+ * and only its image is changed.
  * <p>
  * rightWrapper - Wrapper panel that contains the table.
  * <p>
@@ -38,6 +43,14 @@ import java.util.ArrayList;
  * markedRow - The latest row whose program is expired.
  * <p>
  * defaultImage - The default image used if there aren't any other.
+ * <p>
+ * defaultAddress - The address of the default image.
+ * <p>
+ * thumbnails - Scales the images to the size of picLabel in the
+ * background.
+ * <p>
+ * imageRequest - The number of the latest image change, so that a
+ * thumbnail that is done late doesn't replace a later one.
  *
  * @author  Victor Gustafsson, dv16vgn
  * @version 1.0
@@ -60,12 +73,18 @@ public class RadioView extends JFrame {
     private JLabel picLabel;
 
     private JPanel rightWrapper = new JPanel();
-    private DefaultTableModel model;
+    private ProgramTableModel model;
     private JTable table = new JTable();
 
     private int markedRow;
     private ImageIcon defaultImage = new ImageIcon (
             "src/main/resources/default.png");
+    private URL defaultAddress = addressOf("src/main/resources/default.png");
+    private ThumbnailCache thumbnails = ThumbnailCache.getInstance();
+    private long imageRequest;
+
+    private static final int IMAGE_WIDTH = 300;
+    private static final int IMAGE_HEIGHT = 310;
 
     RadioView(){
 
@@ -102,30 +121,22 @@ public class RadioView extends JFrame {
 
         /*Image area setup.*/
 
-        ImageIcon image = new ImageIcon("src/main/resources/default.png");
-        Image image2 = image.getImage();
-        Image image3 = image2.getScaledInstance(300, 310, Image.SCALE_SMOOTH);
-        image = new ImageIcon(image3);
-        picLabel = new JLabel(image);
+        picLabel = new JLabel();
+        picLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
         leftWrapper.add(picLabel);
+        changeImage(null, null);
 
         /*Program table setup.*/
 
-        model = new DefaultTableModel(){
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-        model.addColumn("Program");
-        model.addColumn("Start");
-        model.addColumn("End");
+        model = new ProgramTableModel();
         table.setModel(model);
         table.setFont(new Font("Serif", Font.PLAIN, 14));
         table.getTableHeader().setReorderingAllowed(false);
         table.getColumnModel().getColumn(0).setPreferredWidth(250);
         table.getColumnModel().getColumn(1).setPreferredWidth(130);
         table.getColumnModel().getColumn(2).setPreferredWidth(130);
+        table.getColumnModel().getColumn(0).setCellRenderer(
+                new CustomRenderer());
         JScrollPane pane = new JScrollPane(table);
         pane.setPreferredSize(new Dimension(500, 620));
         rightWrapper.setPreferredSize(new Dimension(800, 620));
@@ -198,23 +209,75 @@ public class RadioView extends JFrame {
 
     /**
      * Changes the displayed image. Defaults to the default image if the
-     * provided image is null.
+     * provided image is null or couldn't be loaded, or if it can't be
+     * scaled. An image that has been shown before is shown right away,
+     * others are scaled in the background and shown when they are done,
+     * unless the image has been changed again by then. Has to be called on
+     * the EDT.
      * @param newImage A new image to change too.
+     * @param address The address the image was loaded from, which its
+     * thumbnail is cached by. May be null.
      */
 
-    public void changeImage(ImageIcon newImage) {
-        ImageIcon image;
-        if(newImage == null){
+    public void changeImage(ImageIcon newImage, URL address) {
+        if(newImage == null || newImage.getIconWidth() <= 0){
             newImage =  defaultImage;
+            address = defaultAddress;
         }
-        Image image2 = newImage.getImage();
-        image2 = image2.getScaledInstance(300, 310, Image.SCALE_SMOOTH);
-        image = new ImageIcon(image2);
-        picLabel = new JLabel(image);
-        leftWrapper.remove(1);
-        leftWrapper.add(picLabel);
+        final long request = ++imageRequest;
+        CompletableFuture<ImageIcon> thumbnail = thumbnails.scale(address,
+                newImage, IMAGE_WIDTH, IMAGE_HEIGHT);
+        /*Runs right away on the EDT if the thumbnail is already done.*/
+        thumbnail.whenComplete(new BiConsumer<ImageIcon, Throwable>() {
+            public void accept(final ImageIcon scaled,
+                               final Throwable failure) {
+                Runnable show = new Runnable() {
+                    public void run() {
+                        if(request != imageRequest){
+                            return;
+                        }
+                        if(failure == null && scaled != null){
+                            picLabel.setIcon(scaled);
+                        }else{
+                            picLabel.setIcon(defaultThumbnail());
+                        }
+                    }
+                };
+                if(SwingUtilities.isEventDispatchThread()){
+                    show.run();
+                }else{
+                    SwingUtilities.invokeLater(show);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the default image to show when an image can't be scaled.
+     * @return The scaled default image if it is cached, else the default
+     * image as it is.
+     */
 
-        this.setVisible(true);
+    private ImageIcon defaultThumbnail(){
+        ImageIcon cached = thumbnails.getCached(defaultAddress, IMAGE_WIDTH,
+                IMAGE_HEIGHT);
+        return cached != null ? cached : defaultImage;
+    }
+
+    /**
+     * Gets the address of a bundled image file.
+     * @param path The path of the file.
+     * @return The address of the file, or null if it can't be made into
+     * one.
+     */
+
+    static URL addressOf(String path){
+        try {
+            return new File(path).toURI().toURL();
+        } catch (MalformedURLException e) {
+            /*The image is still shown, only its thumbnail isn't cached.*/
+            return null;
+        }
     }
 
     /**
@@ -223,7 +286,7 @@ public class RadioView extends JFrame {
      * @param list A list of RadioChannels whose name are to be added.
      */
 
-    public void updateComboBoxContent(ArrayList<RadioChannel> list){
+    public void updateComboBoxContent(List<RadioChannel> list){
         if (comboBox.getItemCount() > 0){
             comboBox.removeAllItems();
         }
@@ -241,35 +304,70 @@ public class RadioView extends JFrame {
     }
 
     /**
-     * Updates the table with the provided RadioPrograms.
-     * @param list A list of RadioPrograms toadd to the table.
+     * Updates the table with the provided RadioPrograms. The table reads
+     * the programs from the schedule, and if the schedule is the one
+     * already shown only the changed rows are redrawn.
+     * @param list A schedule of RadioPrograms to show in the table, or null
+     *             to empty it.
      */
 
-    public void updateProgramTable(ArrayList<RadioProgram> list){
-        model.setRowCount(0);
-        if(list!=null){
-            for (RadioProgram rp : list){
-                model.addRow(new Object[]{rp.getName(),
-                        rp.getFormattedStartTime(), rp.getFormattedEndTime()});
-            }
-        }
+    public void updateProgramTable(ProgramSchedule list){
+        model.setSchedule(list);
+    }
 
-        table.setModel(model);
-        table.getColumnModel().getColumn(0).setPreferredWidth(250);
-        table.getColumnModel().getColumn(1).setPreferredWidth(130);
-        table.getColumnModel().getColumn(2).setPreferredWidth(130);
-        table.getColumnModel().getColumn(0).setCellRenderer(
-                new CustomRenderer());
+    /**
+     * Checks if the table shows a schedule.
+     * @param list The schedule.
+     * @return True if the table shows it, else returns false.
+     */
 
+    public boolean isShowingSchedule(ProgramSchedule list){
+        return list != null && model.getSchedule() == list;
     }
 
     /**
-     * Setter for the marked row.
+     * Setter for the marked row. Only the rows whose marking changes are
+     * redrawn.
      * @param markedRow The number of the marked row.
      */
 
     public void setMarkedRow(int markedRow) {
+        int previous = this.markedRow;
         this.markedRow = markedRow;
+        if(previous != markedRow){
+            repaintRows(Math.min(previous, markedRow) + 1,
+                    Math.max(previous, markedRow));
+        }
+    }
+
+    /**
+     * Redraws a range of rows of the table.
+     * @param first The first row to redraw.
+     * @param last The last row to redraw.
+     */
+
+    private void repaintRows(int first, int last){
+        first = Math.max(first, 0);
+        last = Math.min(last, table.getRowCount() - 1);
+        if(first > last){
+            return;
+        }
+        Rectangle rows = table.getCellRect(first, 0, true).union(
+                table.getCellRect(last, table.getColumnCount() - 1, true));
+        table.repaint(rows);
+    }
+
+    /**
+     * Gets the program shown on a row of the table.
+     * @param row The row in the table, as the table numbers it.
+     * @return The program, or null if the row doesn't exist.
+     */
+
+    public RadioProgram getProgramAt(int row){
+        if(row < 0 || row >= table.getRowCount()){
+            return null;
+        }
+        return model.getProgramAt(table.convertRowIndexToModel(row));
     }
 
     /**
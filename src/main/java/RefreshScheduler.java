@@ -0,0 +1,357 @@
+import javax.swing.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h1>RefreshScheduler</h1>
+ * Refreshes every loaded channel when that channel needs it, instead of
+ * refreshing everything once an hour. When a channel is due depends on
+ * <p>
+ * - how long its schedule has gone without changing. A schedule that
+ * changed at the last load is looked at again soon, one that hasn't
+ * changed for hours is looked at less often.
+ * <p>
+ * - how long the server said the schedule stays fresh, through
+ * Cache-Control or Expires. A channel isn't refreshed before that.
+ * <p>
+ * - how much of the loaded time range is left. A channel is always
+ * refreshed before the upcoming programs it shows run out.
+ * <p>
+ * Every due time gets a random delay, so channels loaded together don't
+ * stay refreshed together, and at most a few channels are refreshed at
+ * once. Channels that have never been loaded are left to be loaded when
+ * they are chosen.
+ * <p>
+ * rm - The model whose channels are refreshed.
+ * <p>
+ * listener - Told on the EDT about every refresh.
+ * <p>
+ * executor - Runs the refreshes.
+ * <p>
+ * permits - One permit for every refresh that may run at once.
+ * <p>
+ * timer - Wakes the scheduler up when the next channel is due.
+ * <p>
+ * plans - The random delay of every channel, and how long to wait after
+ * a refresh that failed.
+ * <p>
+ * running - The channels being refreshed.
+ * <p>
+ * wakeup - The next time the scheduler wakes up, or null if it is
+ * stopped.
+ * <p>
+ * refreshes - The amount of refreshes that have been run.
+ *
+ * @version 1.0
+ */
+
+public class RefreshScheduler {
+
+    /**
+     * System property that sets how many channels may be refreshed at
+     * once.
+     */
+    public static final String CONCURRENCY_PROPERTY =
+            "radioinfo.refresh.concurrency";
+
+    /**
+     * Told when a channel has been refreshed.
+     */
+
+    public interface Listener {
+
+        /**
+         * Called on the EDT after a channel has been refreshed.
+         * @param rc The channel.
+         * @param changed True if its programs changed.
+         */
+
+        void refreshed(RadioChannel rc, boolean changed);
+    }
+
+    static final long MINUTE = 60L * 1000;
+    static final long HOUR = 60 * MINUTE;
+
+    /*No channel is refreshed more often than this, and the scheduler
+    * looks at the channels at least this often.*/
+    static final long MIN_INTERVAL = 15 * MINUTE;
+
+    /*The longest a channel goes unrefreshed on its history alone.*/
+    static final long MAX_INTERVAL = 3 * HOUR;
+
+    /*A channel is refreshed before less than this much of its loaded time
+    * range is left.*/
+    static final long EDGE_MARGIN = 6 * HOUR;
+
+    /*The random delay is up to this part of the wait.*/
+    private static final double JITTER = 0.1;
+
+    private static final int DEFAULT_CONCURRENCY = 2;
+
+    private final RadioModel rm;
+    private final Listener listener;
+    private final IoExecutor executor;
+    private final Semaphore permits;
+    private final ScheduledThreadPoolExecutor timer;
+    private final HashMap<RadioChannel, Plan> plans;
+    private final Set<RadioChannel> running;
+    private ScheduledFuture<?> wakeup;
+    private final AtomicLong refreshes;
+
+    /**
+     * Creates a scheduler that refreshes on the shared IoExecutor, as many
+     * channels at once as the system property says, or 2 if it isn't set.
+     * @param rm The model whose channels to refresh.
+     * @param listener Told about every refresh.
+     */
+
+    public RefreshScheduler(RadioModel rm, Listener listener){
+        this(rm, listener, IoExecutor.getInstance(),
+                Integer.getInteger(CONCURRENCY_PROPERTY,
+                        DEFAULT_CONCURRENCY));
+    }
+
+    /**
+     * Creates a scheduler with the provided settings.
+     * @param rm The model whose channels to refresh.
+     * @param listener Told about every refresh.
+     * @param executor Runs the refreshes.
+     * @param concurrency How many channels may be refreshed at once.
+     */
+
+    RefreshScheduler(RadioModel rm, Listener listener, IoExecutor executor,
+                     int concurrency){
+        this.rm = rm;
+        this.listener = listener;
+        this.executor = executor;
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "radio-refresh");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.plans = new HashMap<RadioChannel, Plan>();
+        this.running = Collections.newSetFromMap(
+                new ConcurrentHashMap<RadioChannel, Boolean>());
+        this.wakeup = null;
+        this.refreshes = new AtomicLong();
+    }
+
+    /**
+     * Starts refreshing the channels as they become due.
+     */
+
+    public synchronized void start(){
+        if(wakeup == null){
+            wakeIn(0);
+        }
+    }
+
+    /**
+     * Stops refreshing. Refreshes that are running are finished.
+     */
+
+    public synchronized void stop(){
+        if(wakeup != null){
+            wakeup.cancel(false);
+            wakeup = null;
+        }
+    }
+
+    /**
+     * Works out when a channel should be refreshed, before the random
+     * delay. The wait grows with how long the schedule has gone without
+     * changing, is stretched to when the server says it stops being fresh,
+     * and is cut so that the loaded time range doesn't run out.
+     * @param rc A channel that has been loaded.
+     * @return When to refresh it, in milliseconds.
+     */
+
+    static long dueTime(RadioChannel rc){
+        long refreshed = rc.getRefreshedAt();
+        long quiet = refreshed - rc.getLastChangedAt();
+        long due = refreshed + Math.max(MIN_INTERVAL,
+                Math.min(MAX_INTERVAL, quiet / 2));
+        due = Math.max(due, rc.getFreshUntil());
+        due = Math.min(due, rc.getLoadedTo() - EDGE_MARGIN);
+        return Math.max(due, refreshed + MIN_INTERVAL);
+    }
+
+    /**
+     * Starts refreshing the channels that are due, as many as there are
+     * permits for, and sleeps until the next one is due. Refreshes that
+     * finish wake the scheduler up again, so channels that had to wait
+     * for a permit aren't kept waiting.
+     * @param now The current time in milliseconds.
+     */
+
+    synchronized void wake(long now){
+        if(wakeup == null){
+            return;
+        }
+        long next = now + MIN_INTERVAL;
+        for(RadioChannel rc : rm.getRadioChannels()){
+            if(rc.getRefreshedAt() == 0 || running.contains(rc)){
+                continue;
+            }
+            long due = planOf(rc).due(rc);
+            if(due > now){
+                next = Math.min(next, due);
+            }else if(permits.tryAcquire()){
+                refresh(rc, now);
+            }
+        }
+        wakeIn(next - now);
+    }
+
+    /**
+     * Gets the plan of a channel, with a new random delay if the channel
+     * has been loaded since the plan was made.
+     * @param rc The channel.
+     * @return The plan.
+     */
+
+    private Plan planOf(RadioChannel rc){
+        Plan plan = plans.get(rc);
+        if(plan == null){
+            plan = new Plan();
+            plans.put(rc, plan);
+        }
+        long refreshed = rc.getRefreshedAt();
+        if(plan.refreshedAt != refreshed){
+            long wait = Math.max(0, dueTime(rc) - refreshed);
+            plan.refreshedAt = refreshed;
+            plan.jitter = (long) (ThreadLocalRandom.current().nextDouble() *
+                    JITTER * wait);
+            plan.notBefore = 0;
+        }
+        return plan;
+    }
+
+    /**
+     * Refreshes a channel in the background. A refresh that doesn't get
+     * through waits at least MIN_INTERVAL before it is tried again.
+     * @param rc The channel.
+     * @param now The current time in milliseconds.
+     */
+
+    private void refresh(final RadioChannel rc, final long now){
+        running.add(rc);
+        final long before = rc.getRefreshedAt();
+        executor.execute(new Runnable() {
+            public void run() {
+                boolean changed = false;
+                try {
+                    changed = rm.updateSchedule(rc);
+                } finally {
+                    refreshes.incrementAndGet();
+                    synchronized (RefreshScheduler.this){
+                        if(rc.getRefreshedAt() == before){
+                            planOf(rc).notBefore = now + MIN_INTERVAL;
+                        }
+                    }
+                    running.remove(rc);
+                    permits.release();
+                    tell(rc, changed);
+                    synchronized (RefreshScheduler.this){
+                        if(wakeup != null){
+                            wakeIn(0);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Tells the listener about a refresh on the EDT.
+     * @param rc The refreshed channel.
+     * @param changed True if its programs changed.
+     */
+
+    private void tell(final RadioChannel rc, final boolean changed){
+        if(listener == null){
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                listener.refreshed(rc, changed);
+            }
+        });
+    }
+
+    /**
+     * Replaces the next wakeup. Has to be called holding the lock.
+     * @param delay How long to sleep, in milliseconds.
+     */
+
+    private void wakeIn(long delay){
+        if(wakeup != null){
+            wakeup.cancel(false);
+        }
+        wakeup = timer.schedule(new Runnable() {
+            public void run() {
+                wake(System.currentTimeMillis());
+            }
+        }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Getter for the amount of refreshes that have been run.
+     * @return The amount of refreshes.
+     */
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    /**
+     * Gets when every loaded channel is planned to be refreshed, with its
+     * random delay.
+     * @return The due times in milliseconds, by channel.
+     */
+
+    synchronized Map<RadioChannel, Long> getDueTimes(){
+        HashMap<RadioChannel, Long> due = new HashMap<RadioChannel, Long>();
+        for(RadioChannel rc : rm.getRadioChannels()){
+            if(rc.getRefreshedAt() != 0){
+                due.put(rc, planOf(rc).due(rc));
+            }
+        }
+        return due;
+    }
+
+    /**
+     * The random delay of a channel and how long to wait after a failed
+     * refresh.
+     */
+
+    private static class Plan {
+        private long refreshedAt = -1;
+        private long jitter;
+        private long notBefore;
+
+        /**
+         * Gets when the channel is due, with the random delay.
+         * @param rc The channel the plan belongs to.
+         * @return The time in milliseconds.
+         */
+
+        long due(RadioChannel rc){
+            return Math.max(dueTime(rc) + jitter, notBefore);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <h1>SchedulePrefetcher</h1>
+ * Optional background warm-up that loads the schedules of all channels
+ * after startup, so that the first selection of a channel doesn't have to
+ * wait for downloads. Runs a few workers on the shared IoExecutor and
+ * pauses while the user is waiting for a channel that hasn't been loaded
+ * yet.
+ * <p>
+ * rm - The model whose channels to load.
+ * <p>
+ * threads - The maximum amount of channels loaded at the same time.
+ * <p>
+ * queue - Channels waiting to be loaded.
+ * <p>
+ * running - The amount of live workers.
+ * <p>
+ * pauses - The amount of user loads currently pausing the warm-up.
+ * <p>
+ * waiting - The amount of workers waiting for the warm-up to resume.
+ *
+ * @version 1.0
+ */
+
+public class SchedulePrefetcher {
+
+    /**
+     * System property that turns the warm-up on, "true" or "false".
+     */
+    public static final String ENABLED_PROPERTY = "radioinfo.prefetch";
+
+    /**
+     * System property that sets the amount of warm-up threads.
+     */
+    public static final String THREADS_PROPERTY = "radioinfo.prefetch.threads";
+
+    private static final int DEFAULT_THREADS = 2;
+
+    private RadioModel rm;
+    private int threads;
+    private LinkedBlockingQueue<RadioChannel> queue;
+    private int running;
+    private int pauses;
+    private int waiting;
+
+    /**
+     * Creates a prefetcher with the amount of threads from the system
+     * property, or 2 if it isn't set.
+     * @param rm The model whose channels to load.
+     */
+
+    public SchedulePrefetcher(RadioModel rm){
+        this(rm, Math.max(1, Integer.getInteger(THREADS_PROPERTY,
+                DEFAULT_THREADS)));
+    }
+
+    /**
+     * Creates a prefetcher with the provided amount of threads.
+     * @param rm The model whose channels to load.
+     * @param threads The maximum amount of channels loaded at once.
+     */
+
+    public SchedulePrefetcher(RadioModel rm, int threads){
+        this.rm = rm;
+        this.threads = threads;
+        this.queue = new LinkedBlockingQueue<RadioChannel>();
+        this.running = 0;
+        this.pauses = 0;
+        this.waiting = 0;
+    }
+
+    /**
+     * Checks if the warm-up is turned on by the system property.
+     * @return True if it is turned on, else returns false.
+     */
+
+    public static boolean isEnabled(){
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Queues every channel without programs and starts workers if there
+     * are fewer than the maximum. Can be called again after an update.
+     */
+
+    public synchronized void start(){
+        queue.clear();
+        for(RadioChannel rc : rm.getRadioChannels()){
+            if(rc.getPrograms().size() == 0){
+                queue.add(rc);
+            }
+        }
+        while(running < threads && running < queue.size()){
+            running++;
+            IoExecutor.getInstance().execute(new Worker());
+        }
+    }
+
+    /**
+     * Drops all channels that haven't been started yet. Channels that are
+     * already loading are finished.
+     */
+
+    public void cancel(){
+        queue.clear();
+    }
+
+    /**
+     * Pauses the warm-up so the user's own load isn't slowed down. Every
+     * call has to be followed by a call to resume.
+     */
+
+    public synchronized void pause(){
+        pauses++;
+    }
+
+    /**
+     * Resumes the warm-up after a pause.
+     */
+
+    public synchronized void resume(){
+        pauses--;
+        notifyAll();
+    }
+
+    /**
+     * Getter for the amount of channels waiting to be loaded.
+     * @return The amount of waiting channels.
+     */
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * Getter for the amount of workers held back by a pause.
+     * @return The amount of workers waiting for resume.
+     */
+
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Checks if no worker is running.
+     * @return True if the warm-up is done or cancelled, else returns false.
+     */
+
+    public synchronized boolean isIdle() {
+        return running == 0;
+    }
+
+    /**
+     * Waits until no user load is pausing the warm-up.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+
+    private synchronized void awaitResume() throws InterruptedException {
+        waiting++;
+        try {
+            while(pauses > 0){
+                wait();
+            }
+        } finally {
+            waiting--;
+        }
+    }
+
+    /**
+     * Takes the next channel to load. A worker that gets null has stopped,
+     * which is decided under the lock so that start never counts a worker
+     * that is about to stop.
+     * @return The next channel, or null if there are none left.
+     */
+
+    private synchronized RadioChannel next(){
+        RadioChannel rc = queue.poll();
+        if(rc == null){
+            running--;
+        }
+        return rc;
+    }
+
+    /**
+     * Counts down a worker that stopped before the queue was empty.
+     */
+
+    private synchronized void stopped(){
+        running--;
+    }
+
+    /**
+     * Loads queued channels one at a time until the queue is empty.
+     */
+
+    private class Worker implements Runnable {
+        public void run() {
+            RadioChannel rc = null;
+            try {
+                while((rc = next()) != null){
+                    awaitResume();
+                    rm.loadScheduleIfEmpty(rc);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if(rc != null){
+                    /*Stopped early, so next never counted it down.*/
+                    stopped();
+                }
+            }
+        }
+    }
+}
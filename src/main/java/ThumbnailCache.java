@@ -0,0 +1,212 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <h1>ThumbnailCache</h1>
+ * Scales images to the size they are shown in, on the IoExecutor instead
+ * of the EDT, and keeps the scaled images so that showing the same image
+ * again doesn't scale it again. Scaled images are keyed by the address of
+ * their source image and the size they were scaled to.
+ * <p>
+ * instance - The cache shared by the whole program.
+ * <p>
+ * cache - The scaled images, evicted least recently used first once they
+ * go over the byte budget.
+ * <p>
+ * executor - Runs the scaling.
+ * <p>
+ * pending - Scalings in progress, keyed like the cache. Used to let
+ * concurrent requests for the same thumbnail share one scaling.
+ *
+ * @version 1.0
+ */
+
+public class ThumbnailCache {
+
+    /**
+     * System property that sets the byte budget of the shared cache.
+     */
+    public static final String BUDGET_PROPERTY = "radioinfo.thumbnails.bytes";
+
+    private static final long DEFAULT_BUDGET = 8L * 1024 * 1024;
+    private static final ThumbnailCache instance = new ThumbnailCache();
+
+    private final ImageCache cache;
+    private final IoExecutor executor;
+    private final ConcurrentHashMap<String, CompletableFuture<ImageIcon>>
+            pending;
+
+    /**
+     * Creates a cache with the budget from the system property, or 8 MB if
+     * it isn't set.
+     */
+
+    ThumbnailCache(){
+        this(new ImageCache(Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET)),
+                IoExecutor.getInstance());
+    }
+
+    /**
+     * Creates a cache that keeps the thumbnails in the provided cache.
+     * @param cache Keeps the scaled images.
+     * @param executor Runs the scaling.
+     */
+
+    ThumbnailCache(ImageCache cache, IoExecutor executor){
+        this.cache = cache;
+        this.executor = executor;
+        this.pending =
+                new ConcurrentHashMap<String, CompletableFuture<ImageIcon>>();
+    }
+
+    /**
+     * Getter for the shared cache.
+     * @return The shared cache.
+     */
+
+    public static ThumbnailCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets a thumbnail that has already been scaled, without scaling it.
+     * @param address The address of the image to show. May be null.
+     * @param width The width to show it in.
+     * @param height The height to show it in.
+     * @return The scaled image, or null if it hasn't been scaled.
+     */
+
+    public ImageIcon getCached(URL address, int width, int height){
+        String key = keyOf(address, width, height);
+        return key == null ? null : cache.get(key);
+    }
+
+    /**
+     * Starts scaling an image in the background and returns right away.
+     * Thumbnails that are cached are returned as an already finished
+     * future, and a thumbnail that is being scaled is shared. Images
+     * without an address can't be looked up again, so they are scaled but
+     * not cached.
+     * @param address The address the image was loaded from. May be null.
+     * @param source The image to show.
+     * @param width The width to show it in.
+     * @param height The height to show it in.
+     * @return The scaled image to come.
+     */
+
+    public CompletableFuture<ImageIcon> scale(final URL address,
+                                              final ImageIcon source,
+                                              final int width,
+                                              final int height){
+        final String key = keyOf(address, width, height);
+        if(key != null){
+            ImageIcon cached = cache.get(key);
+            if(cached != null){
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        final CompletableFuture<ImageIcon> result =
+                new CompletableFuture<ImageIcon>();
+        if(key != null){
+            CompletableFuture<ImageIcon> existing =
+                    pending.putIfAbsent(key, result);
+            if(existing != null){
+                return existing;
+            }
+        }
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    ImageIcon scaled = scaleNow(source, width, height);
+                    if(key != null){
+                        cache.put(key, scaled);
+                    }
+                    result.complete(scaled);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    if(key != null){
+                        pending.remove(key, result);
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Scales an image on the calling thread. Large images are halved a few
+     * times before the last step, which keeps the result smooth without
+     * the cost of area averaging.
+     * @param source The image to scale. Has to be loaded.
+     * @param width The width to scale to.
+     * @param height The height to scale to.
+     * @return The scaled image.
+     */
+
+    static ImageIcon scaleNow(ImageIcon source, int width, int height){
+        Image image = source.getImage();
+        int w = Math.max(source.getIconWidth(), 1);
+        int h = Math.max(source.getIconHeight(), 1);
+        do {
+            w = w / 2 >= width ? w / 2 : width;
+            h = h / 2 >= height ? h / 2 : height;
+            image = draw(image, w, h);
+        } while(w != width || h != height);
+        return new ImageIcon(image);
+    }
+
+    /**
+     * Draws an image into a new image of another size.
+     * @param image The image to draw.
+     * @param width The width of the new image.
+     * @param height The height of the new image.
+     * @return The new image.
+     */
+
+    private static BufferedImage draw(Image image, int width, int height){
+        BufferedImage scaled = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                    RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Gets what a thumbnail is cached by.
+     * @param address The address of the image to show. May be null.
+     * @param width The width to show it in.
+     * @param height The height to show it in.
+     * @return The address of the image and the size, or null if the image
+     * has no address.
+     */
+
+    static String keyOf(URL address, int width, int height){
+        if(address == null){
+            return null;
+        }
+        return address + "@" + width + "x" + height;
+    }
+
+    /**
+     * Getter for the cache that keeps the thumbnails, which counts hits
+     * and misses.
+     * @return The cache.
+     */
+
+    public ImageCache getCache() {
+        return cache;
+    }
+}
@@ -3,19 +3,34 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
-import javax.swing.*;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * <h1>XMLDataParser</h1>
  * Parser of InputSources containing RadioChannel/RadioProgram
  * data in XML format.
  * <p>
- * channelPagesCount - The amount of channel pages.
+ * engine - The parser engine to use. STAX reads the XML in one streaming
+ * pass, DOM builds the whole document first.
  * <p>
- * radioChannels - An array of channels to fill.
+ * inputFactory - Shared factory for the streaming readers.
+ * <p>
+ * documentFactory - Shared factory for the document builders.
+ * <p>
+ * documentBuilders - One document builder per thread, reset after every
+ * parse, since a builder can't be used by two threads at once.
  * <p>
  *
  * @author  Victor Gustafsson, dv16vgn
@@ -24,11 +39,87 @@ import java.util.ArrayList;
  */
 public class XMLDataParser {
 
-    private String channelPagesCount;
-    private ArrayList<RadioChannel> radioChannels;
+    /**
+     * System property that picks the default engine, "dom" or "stax".
+     */
+    public static final String ENGINE_PROPERTY = "radioinfo.parser";
+
+    /**
+     * The available parser engines.
+     */
+    public enum Engine { DOM, STAX }
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+    private static final DocumentBuilderFactory documentFactory =
+            DocumentBuilderFactory.newInstance();
+    private static final ThreadLocal<DocumentBuilder> documentBuilders =
+            new ThreadLocal<DocumentBuilder>() {
+                protected DocumentBuilder initialValue() {
+                    return createDocumentBuilder();
+                }
+            };
+
+    private Engine engine;
+
+    /**
+     * Creates a parser with the engine from the system property, or the
+     * streaming engine if it isn't set.
+     */
 
     public XMLDataParser (){
-        this.channelPagesCount = "";
+        this("dom".equalsIgnoreCase(System.getProperty(ENGINE_PROPERTY))
+                ? Engine.DOM : Engine.STAX);
+    }
+
+    /**
+     * Creates a parser that uses the provided engine.
+     * @param engine The engine to use.
+     */
+
+    public XMLDataParser (Engine engine){
+        this.engine = engine;
+    }
+
+    /**
+     * Creates the factory for the streaming readers. External entities and
+     * DTDs are turned off since the API never uses them.
+     * @return The new factory.
+     */
+
+    private static XMLInputFactory createInputFactory(){
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(
+                XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Creates a document builder for the calling thread. The factory isn't
+     * thread-safe, so only one builder is created at a time.
+     * @return The new builder.
+     */
+
+    private static DocumentBuilder createDocumentBuilder(){
+        synchronized (documentFactory){
+            try {
+                return documentFactory.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                /*The default factory always supports its default
+                 configuration.*/
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Getter for the engine.
+     * @return The engine.
+     */
+
+    public Engine getEngine() {
+        return engine;
     }
 
     /**
@@ -36,98 +127,319 @@ public class XMLDataParser {
      * on type.
      * @param is The input source of XML to be parsed.
      * @param type The type of data to look for. 0 for channel pages,
-     *            1 for channels, 2 for programs and 3 for program pages.
+     *            1 for channels, 2 for programs, 3 for program pages,
+     *            4 for channels and channel pages and 5 for programs and
+     *            program pages.
+     * @param radioChannel Radio channel to add data to for option 2, 3 & 5.
+     * @param list List of channels to add data to for option 1 & 4. Passed
+     *             along instead of stored so that pages can be parsed
+     *             concurrently.
+     * @return The amount of pages for option 0, 3, 4 & 5, else null.
+     * @throws IOException If the XML can't be read or parsed.
+     */
+
+    private String getData(InputSource is, int type,
+                           RadioChannel radioChannel,
+                           List<RadioChannel> list) throws IOException {
+        if(type < 0 || type > 5){
+            System.err.println("Undefined type" +
+                    " in XMLDataParser.GetData");
+            return null;
+        }
+
+        try {
+            if(engine == Engine.STAX){
+                return getStreamData(is, type, radioChannel, list);
+            }else{
+                return getDocumentData(is, type, radioChannel, list);
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            /* Wraps the parsing exceptions (ParserConfigurationException,
+            SAXException, XMLStreamException and missing elements) so that
+            a broken response fails like a failed download, and the caller
+            decides what to do without it.*/
+            throw new IOException("Parsing failed due to " +
+                    e.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Checks if a type asks for the amount of pages.
+     * @param type The type, see getData.
+     * @return True for option 0, 3, 4 & 5, else returns false.
+     */
+
+    private static boolean wantsPages(int type){
+        return type != 1 && type != 2;
+    }
+
+    /**
+     * Checks if a type asks for the entities of the page.
+     * @param type The type, see getData.
+     * @return True for option 1, 2, 4 & 5, else returns false.
+     */
+
+    private static boolean wantsEntities(int type){
+        return type != 0 && type != 3;
+    }
+
+    /**
+     * Checks if a type asks for channels rather than programs.
+     * @param type The type, see getData.
+     * @return True for option 1 & 4, else returns false.
+     */
+
+    private static boolean wantsChannels(int type){
+        return type == 1 || type == 4;
+    }
+
+    /**
+     * Builds a DOM of the XML and handles the nodes depending on type.
+     * @param is The input source of XML to be parsed.
+     * @param type The type of data to look for, see getData.
      * @param radioChannel Radio channel to add data to for option 2 & 3.
+     * @param list List of channels to add data to for option 1.
+     * @return The amount of pages if the type asks for it, else null.
+     * @throws Exception If the XML can't be read or parsed.
      */
 
-    private void getData(InputSource is, int type, RadioChannel radioChannel){
-        String typeName;
-        DocumentBuilderFactory dbFactory;
-        dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder;
+    private String getDocumentData(InputSource is, int type,
+                                   RadioChannel radioChannel,
+                                   List<RadioChannel> list)
+            throws Exception {
+        DocumentBuilder dBuilder = documentBuilders.get();
         Document doc;
         NodeList nList;
+        String pages = null;
 
-        switch (type){
-            case 0: typeName = "pagination";
-                    break;
-            case 1: typeName = "channel";
-                    break;
-            case 2: typeName = "scheduledepisode";
-                    break;
-            case 3: typeName = "pagination";
-                    break;
-            default: System.err.println("Undefined type" +
-                    " in XMLDataParser.GetData");
-                    return;
+        try {
+            doc = dBuilder.parse(is);
+        } finally {
+            dBuilder.reset();
+        }
+        doc.getDocumentElement().normalize();
+
+        if(wantsPages(type)){
+            Node pagination = doc.getElementsByTagName("pagination").item(0);
+            if(pagination != null){
+                pages = handlePageNode((Element) pagination);
+                if(type == 3 || type == 5){
+                    radioChannel.setTablePageCount(pages);
+                }
+            }
+        }
+        if(!wantsEntities(type)){
+            return pages;
         }
 
+        nList = doc.getElementsByTagName(wantsChannels(type)
+                ? "channel" : "scheduledepisode");
+        for (int temp = 0; temp < nList.getLength(); temp++){
+            Node nNode = nList.item(temp);
+            if (nNode.getNodeType() == Node.ELEMENT_NODE){
+                Element e = (Element) nNode;
+                if(wantsChannels(type)){
+                    handleRadioChannelNode(e, list);
+                }else{
+                    handleRadioProgramNode(e, radioChannel);
+                }
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Reads the XML in one streaming pass and handles the elements
+     * depending on type.
+     * @param is The input source of XML to be parsed.
+     * @param type The type of data to look for, see getData.
+     * @param radioChannel Radio channel to add data to for option 2 & 3.
+     * @param list List of channels to add data to for option 1.
+     * @return The amount of pages if the type asks for it, else null.
+     * @throws XMLStreamException If the XML can't be parsed.
+     * @throws IOException If the XML can't be read.
+     */
+
+    private String getStreamData(InputSource is, int type,
+                               RadioChannel radioChannel,
+                               List<RadioChannel> list)
+            throws XMLStreamException, IOException {
+        Closeable input = null;
+        XMLStreamReader r;
+        if(is.getCharacterStream() != null){
+            input = is.getCharacterStream();
+            r = inputFactory.createXMLStreamReader(is.getCharacterStream());
+        }else if(is.getByteStream() != null){
+            input = is.getByteStream();
+            r = is.getEncoding() != null
+                    ? inputFactory.createXMLStreamReader(is.getByteStream(),
+                            is.getEncoding())
+                    : inputFactory.createXMLStreamReader(is.getByteStream());
+        }else{
+            InputStream stream = new URL(is.getSystemId()).openStream();
+            input = stream;
+            r = inputFactory.createXMLStreamReader(is.getSystemId(), stream);
+        }
+
+        String pages = null;
+        String entityName = wantsChannels(type)
+                ? "channel" : "scheduledepisode";
         try {
-            dBuilder = dbFactory.newDocumentBuilder();
-            doc = dBuilder.parse(is);
-            doc.getDocumentElement().normalize();
-            nList = doc.getElementsByTagName(typeName);
-
-            for (int temp = 0; temp < nList.getLength(); temp++){
-                Node nNode = nList.item(temp);
-                if (nNode.getNodeType() == Node.ELEMENT_NODE){
-                    Element e = (Element) nNode;
-                    switch (type){
-                        case 0:
-                            handleChannelPageNode(e);
-                            return;
-                        case 1:
-                            handleRadioChannelNode(e);
-                            break;
-                        case 2:
-                            handleRadioProgramNode(e, radioChannel);
-                            break;
-                        case 3:
-                            handleTablePageNode(e, radioChannel);
-                            return;
+            while(r.hasNext()){
+                if(r.next() != XMLStreamConstants.START_ELEMENT){
+                    continue;
+                }
+                String tag = r.getLocalName();
+                if(tag.equals("pagination") && wantsPages(type)
+                        && pages == null){
+                    pages = readChildTexts(r, "totalpages")[0];
+                    if(type == 3 || type == 5){
+                        radioChannel.setTablePageCount(pages);
+                    }
+                    if(!wantsEntities(type)){
+                        return pages;
+                    }
+                }else if(tag.equals(entityName) && wantsEntities(type)){
+                    if(wantsChannels(type)){
+                        readRadioChannel(r, list);
+                    }else{
+                        readRadioProgram(r, radioChannel);
                     }
                 }
             }
-        } catch (Exception e) {
-            /* Catches all exceptions related to parsing
-            (ParserConfigurationException, SAXException and IOException)
-            , tells the user which one triggered and quits the program,
-            since it can't run correctly without parsed data.*/
+            return pages;
+        } finally {
+            r.close();
+            input.close();
+        }
+    }
 
-            JOptionPane.showMessageDialog(new JFrame(),
-                    "Parsing failed due to " + e.getClass().getSimpleName());
-            System.exit(1);
+    /**
+     * Reads the rest of the current element and collects the text of the
+     * first descendant with each of the provided names. Leaves the reader
+     * at the end of the current element.
+     * @param r The reader, positioned at the start of an element.
+     * @param names The names of the descendants to read.
+     * @return The texts in the same order as the names. Descendants that
+     * don't exist get null.
+     * @throws XMLStreamException If the XML can't be parsed.
+     */
+
+    private static String[] readChildTexts(XMLStreamReader r, String... names)
+            throws XMLStreamException {
+        String[] texts = new String[names.length];
+        int depth = 1;
+        while(depth > 0){
+            int event = r.next();
+            if(event == XMLStreamConstants.END_ELEMENT){
+                depth--;
+            }else if(event == XMLStreamConstants.START_ELEMENT){
+                int i = indexOf(names, r.getLocalName());
+                if(i >= 0 && texts[i] == null){
+                    /*getElementText moves to the matching end element.*/
+                    texts[i] = r.getElementText();
+                }else{
+                    depth++;
+                }
+            }
         }
+        return texts;
     }
 
     /**
-     * Reads a node for the amount of channel pages.
-     * @param e The node to read.
+     * Finds a name in an array of names.
+     * @param names The names to search.
+     * @param name The name to look for.
+     * @return The index of the name, or -1 if it isn't there.
+     */
+
+    private static int indexOf(String[] names, String name){
+        for(int i = 0; i < names.length; i++){
+            if(names[i].equals(name)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a channel element and adds the new channel to the list.
+     * @param r The reader, positioned at the start of a channel element.
+     * @param list The list to add the channel to.
+     * @throws XMLStreamException If the XML can't be parsed.
      */
 
-    private void handleChannelPageNode(Element e){
-        this.channelPagesCount = e.getElementsByTagName
-                ("totalpages").item(0).getTextContent();
+    private void readRadioChannel(XMLStreamReader r,
+                                  List<RadioChannel> list)
+            throws XMLStreamException {
+        String name = r.getAttributeValue(null, "name");
+        String id = r.getAttributeValue(null, "id");
+        RadioChannel rc = new RadioChannel(name != null ? name : "",
+                id != null ? id : "");
+        String[] texts = readChildTexts(r, "tagline", "image");
+        if(texts[0] != null){
+            rc.setDescription(texts[0]);
+        }
+        if(texts[1] != null){
+            rc.setImageAddress(texts[1]);
+            rc.downloadImage();
+        }
+        list.add(rc);
+    }
+
+    /**
+     * Reads a scheduled episode element and adds the new program to the
+     * channel.
+     * @param r The reader, positioned at the start of a scheduledepisode.
+     * @param radioChannel The channel to put the data in.
+     * @throws XMLStreamException If the XML can't be parsed.
+     */
+
+    private void readRadioProgram(XMLStreamReader r, RadioChannel radioChannel)
+            throws XMLStreamException {
+        String[] texts = readChildTexts(r, "title", "description",
+                "starttimeutc", "endtimeutc", "imageurl", "episodeid");
+        if(texts[0] == null || texts[2] == null || texts[3] == null){
+            throw new XMLStreamException("Incomplete scheduledepisode",
+                    r.getLocation());
+        }
+        RadioProgram rp = new RadioProgram(texts[0]);
+        if(texts[5] != null){
+            rp.setEpisodeId(texts[5].trim());
+        }
+        if(texts[1] != null){
+            rp.setDescription(texts[1]);
+        }
+        rp.setStartString(texts[2]);
+        rp.setEndString(texts[3]);
+        if(texts[4] != null){
+            rp.setImageAddress(texts[4]);
+            rp.downloadImage();
+        }
+        rp.parseDates();
+        radioChannel.addProgram(rp);
     }
 
     /**
-     * Reads a node for the amount of table pages.
+     * Reads a pagination node for the amount of pages.
      * @param e The node to read.
-     *  @param radioChannel The channel to put the data in.
+     * @return The amount of pages.
      */
 
-    private void handleTablePageNode(Element e, RadioChannel radioChannel){
-        radioChannel.setTablePageCount(
-                e.getElementsByTagName("totalpages")
-                        .item(0).getTextContent());
+    private String handlePageNode(Element e){
+        return e.getElementsByTagName("totalpages").item(0).getTextContent();
     }
 
     /**
      * Reads a node for a Radio Channel and adds the new channel to the list.
      * @param e The node to read.
+     * @param list The list to add the channel to.
      */
 
-    private void handleRadioChannelNode(Element e){
+    private void handleRadioChannelNode(Element e,
+                                        List<RadioChannel> list){
         RadioChannel rc;
         rc = new RadioChannel(e.getAttribute("name"),
                 e.getAttribute("id"));
@@ -140,7 +452,7 @@ public class XMLDataParser {
                     ("image").item(0).getTextContent());
             rc.downloadImage();
         }
-        radioChannels.add(rc);
+        list.add(rc);
     }
 
     /**
@@ -156,6 +468,10 @@ public class XMLDataParser {
         rp = new RadioProgram(
                 e.getElementsByTagName("title").item(
                         0).getTextContent());
+        if (e.getElementsByTagName("episodeid").item(0)!=null){
+            rp.setEpisodeId(e.getElementsByTagName("episodeid").item(0)
+                    .getTextContent().trim());
+        }
         if (e.getElementsByTagName("description").item(0)!=null){
             rp.setDescription(e.getElementsByTagName("description").item(0)
                     .getTextContent());
@@ -179,44 +495,82 @@ public class XMLDataParser {
      * Checks the XML for the amount of channel pages.
      * @param inputSource The source of XML.
      * @return The number of pages in String format.
+     * @throws IOException If the XML can't be read or parsed.
      */
 
-    public String getChannelPagesCountFromSource(InputSource inputSource){
-        getData(inputSource, 0, null);
-        return channelPagesCount;
+    public String getChannelPagesCountFromSource(InputSource inputSource)
+            throws IOException {
+        return getData(inputSource, 0, null, null);
     }
 
     /**
      * Checks the XML for the amount of table pages and puts it in the channel.
      * @param inputSource The source of XML.
      * @param radioChannel The channel to put the data in.
+     * @throws IOException If the XML can't be read or parsed.
      */
 
     public void getChannelTableCountFromSource(InputSource inputSource,
-                                               RadioChannel radioChannel){
-        getData(inputSource, 3, radioChannel);
+                                               RadioChannel radioChannel)
+            throws IOException {
+        getData(inputSource, 3, radioChannel, null);
     }
 
     /**
      * Checks the XML for Radio Channels and adds them to the provided list.
      * @param inputSource The source of XML.
      * @param list A list of Radio Channels to fill.
+     * @throws IOException If the XML can't be read or parsed.
      */
 
     public void getRadioChannelsFromSource(InputSource inputSource,
-                                           ArrayList<RadioChannel> list){
-        this.radioChannels = list;
-        getData(inputSource, 1, null);
+                                           List<RadioChannel> list)
+            throws IOException {
+        getData(inputSource, 1, null, list);
     }
 
     /**
      * Checks the XML for Radio Programs and adds them to the provided channel.
      * @param inputSource The source of XML.
      * @param radioChannel The channel to put the data in.
+     * @throws IOException If the XML can't be read or parsed.
+     */
+
+    public void getRadioProgramsFromSource(InputSource inputSource,
+                                           RadioChannel radioChannel)
+            throws IOException {
+        getData(inputSource, 2, radioChannel, null);
+    }
+
+    /**
+     * Reads both the amount of channel pages and the Radio Channels in one
+     * pass, adding the channels to the provided list.
+     * @param inputSource The source of XML.
+     * @param list A list of Radio Channels to fill.
+     * @return The number of pages in String format.
+     * @throws IOException If the XML can't be read or parsed.
+     */
+
+    public String getRadioChannelsAndPagesCountFromSource(
+            InputSource inputSource, List<RadioChannel> list)
+            throws IOException {
+        return getData(inputSource, 4, null, list);
+    }
+
+    /**
+     * Reads both the amount of table pages and the Radio Programs in one
+     * pass. The page count is put in the channel and the programs are added
+     * to it.
+     * @param inputSource The source of XML.
+     * @param radioChannel The channel to put the data in.
+     * @return The number of pages in String format.
+     * @throws IOException If the XML can't be read or parsed.
      */
 
-    public void getRadioProgramsFromSource(InputSource inputSource, RadioChannel radioChannel){
-        getData(inputSource, 2, radioChannel);
+    public String getRadioProgramsAndTableCountFromSource(
+            InputSource inputSource, RadioChannel radioChannel)
+            throws IOException {
+        return getData(inputSource, 5, radioChannel, null);
     }
 
 }
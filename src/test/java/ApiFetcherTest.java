@@ -0,0 +1,168 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>ApiFetcherTest</h1>
+ * <p>
+ * folder - Temporary folder for the cached responses.
+ * <p>
+ * server - Local stub server that answers with status, or with BODY if
+ * status is 200.
+ * <p>
+ * status - The status the server answers with.
+ * <p>
+ * calls - The amount of requests the server has answered.
+ * <p>
+ * fetcher - Fetcher with 2 retries, no backoff and a breaker that opens
+ * after 2 failures.
+ * <p>
+ * address - The address of the stub server.
+ *
+ * @version 1.0
+ */
+public class ApiFetcherTest {
+
+    @Test
+    public void serverErrorIsRetriedTest() throws Exception {
+        status = 503;
+        try {
+            fetcher.fetch(address);
+            fail("Nothing is cached, so the failure should be thrown");
+        } catch (HttpCache.StatusException e) {
+            assertEquals(503, e.getStatus());
+        }
+        assertEquals(3, calls.get());
+        assertEquals(2, metrics().getRetries());
+        assertEquals(3, metrics().getErrors());
+    }
+
+    @Test
+    public void clientErrorIsNotRetriedTest() throws Exception {
+        status = 404;
+        try {
+            fetcher.fetch(address);
+            fail("The failure should be thrown");
+        } catch (HttpCache.StatusException e) {
+            assertEquals(404, e.getStatus());
+        }
+        assertEquals(1, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED,
+                fetcher.getBreakerState(address));
+    }
+
+    @Test
+    public void staleCacheIsServedWhenDownTest() throws Exception {
+        assertFalse(fetcher.fetch(address).isStale());
+        status = 500;
+        HttpCache.Response r = fetcher.fetch(address);
+        assertTrue(r.isStale());
+        assertEquals(BODY, new String(r.getBody(), StandardCharsets.UTF_8));
+        assertEquals(1, metrics().getStaleServed());
+    }
+
+    @Test
+    public void openBreakerSkipsServerTest() throws Exception {
+        fetcher.fetch(address);
+        status = 500;
+        fetcher.fetch(address);
+        fetcher.fetch(address);
+        assertEquals(CircuitBreaker.State.OPEN,
+                fetcher.getBreakerState(address));
+        calls.set(0);
+        assertTrue(fetcher.fetch(address).isStale());
+        assertEquals(0, calls.get());
+        assertEquals(1, metrics().getRejected());
+    }
+
+    @Test
+    public void cancelStopsRetriesTest() throws Exception {
+        status = 503;
+        ApiFetcher patient = new ApiFetcher(new HttpCache(
+                folder.newFolder()), 5, 10, 10, 60000);
+        CompletableFuture<HttpCache.Response> download =
+                patient.fetchAsync(address);
+        long end = System.currentTimeMillis() + 5000;
+        while(calls.get() == 0 && System.currentTimeMillis() < end){
+            Thread.sleep(5);
+        }
+        assertTrue(download.cancel(true));
+        int made = calls.get();
+        /*Counted once the download has stopped making calls.*/
+        EndpointMetrics counters = patient.getMetrics().get(
+                ApiFetcher.endpointOf(address));
+        while(counters.getCancelled() == 0 &&
+                System.currentTimeMillis() < end){
+            Thread.sleep(5);
+        }
+        assertEquals(1, counters.getCancelled());
+        assertTrue(calls.get() <= made + 1);
+        assertTrue(counters.getRetries() < 5);
+        assertEquals(CircuitBreaker.State.CLOSED,
+                patient.getBreakerState(address));
+    }
+
+    @Test
+    public void endpointIgnoresQueryTest() throws Exception {
+        assertEquals(ApiFetcher.endpointOf("http://api.sr.se/v2/x?a=1"),
+                ApiFetcher.endpointOf("http://api.sr.se/v2/x?a=2"));
+    }
+
+    private EndpointMetrics metrics(){
+        return fetcher.getMetrics().get(ApiFetcher.endpointOf(address));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        status = 200;
+        calls = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                calls.incrementAndGet();
+                if(status != 200){
+                    exchange.sendResponseHeaders(status, -1);
+                }else{
+                    byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        address = "http://localhost:" + server.getAddress().getPort() +
+                "/channels/";
+        fetcher = new ApiFetcher(new HttpCache(folder.getRoot()), 2, 0, 2,
+                60000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String BODY = "<sr><channels/></sr>";
+    private HttpServer server;
+    private volatile int status;
+    private AtomicInteger calls;
+    private ApiFetcher fetcher;
+    private String address;
+}
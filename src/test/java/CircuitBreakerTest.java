@@ -0,0 +1,85 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>CircuitBreakerTest</h1>
+ * <p>
+ * breaker - Breaker that opens after 3 failures for COOLDOWN ms.
+ *
+ * @version 1.0
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterThresholdTest() throws Exception {
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        assertTrue(breaker.allowRequest().isGranted());
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest().isGranted());
+    }
+
+    @Test
+    public void successResetsFailuresTest() throws Exception {
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        breaker.onSuccess();
+        breaker.onFailure(CircuitBreaker.Permit.CALL);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenAllowsOneTrialTest() throws Exception {
+        open();
+        Thread.sleep(COOLDOWN + 20);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.Permit.TRIAL, breaker.allowRequest());
+        assertEquals(CircuitBreaker.Permit.DENIED, breaker.allowRequest());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void failedTrialOpensAgainTest() throws Exception {
+        open();
+        Thread.sleep(COOLDOWN + 20);
+        CircuitBreaker.Permit trial = breaker.allowRequest();
+        breaker.onFailure(trial);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void cancelledCallKeepsTrialTest() throws Exception {
+        CircuitBreaker.Permit early = breaker.allowRequest();
+        open();
+        Thread.sleep(COOLDOWN + 20);
+        CircuitBreaker.Permit trial = breaker.allowRequest();
+        assertEquals(CircuitBreaker.Permit.TRIAL, trial);
+        breaker.onCancel(early);
+        assertEquals(CircuitBreaker.Permit.DENIED, breaker.allowRequest());
+        breaker.onCancel(trial);
+        assertEquals(CircuitBreaker.Permit.TRIAL, breaker.allowRequest());
+    }
+
+    private void open(){
+        for(int i = 0; i < 3; i++){
+            breaker.onFailure(CircuitBreaker.Permit.CALL);
+        }
+    }
+
+    @Before
+    public void setUp(){
+        breaker = new CircuitBreaker(3, COOLDOWN);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        breaker = null;
+    }
+
+    private static final long COOLDOWN = 100;
+    private CircuitBreaker breaker;
+}
@@ -0,0 +1,248 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>HttpCacheTest</h1>
+ * <p>
+ * folder - Temporary folder for the cached responses.
+ * <p>
+ * server - Local stub server that answers with an ETag and 304s when the
+ * ETag is sent back.
+ * <p>
+ * fullResponses - The amount of 200 responses the server has sent.
+ * <p>
+ * gzipped - The amount of bodies the server has sent gzipped.
+ * <p>
+ * alwaysNotModified - True if the server answers every request with a
+ * 304.
+ * <p>
+ * address - The address of the stub server.
+ *
+ * @version 1.0
+ */
+public class HttpCacheTest {
+
+    @Test
+    public void firstFetchDownloadsBodyTest() throws Exception {
+        HttpCache.Response r = new HttpCache(folder.getRoot()).fetch(address);
+        assertFalse(r.isNotModified());
+        assertEquals(BODY, new String(r.getBody(), StandardCharsets.UTF_8));
+        assertEquals(ETAG, r.getETag());
+    }
+
+    @Test
+    public void secondFetchRevalidatesTest() throws Exception {
+        HttpCache cache = new HttpCache(folder.getRoot());
+        cache.fetch(address);
+        HttpCache.Response r = cache.fetch(address);
+        assertTrue(r.isNotModified());
+        assertEquals(BODY, new String(r.getBody(), StandardCharsets.UTF_8));
+        assertEquals(1, fullResponses.get());
+    }
+
+    @Test
+    public void cacheSurvivesRestartTest() throws Exception {
+        new HttpCache(folder.getRoot()).fetch(address);
+        HttpCache.Response r = new HttpCache(folder.getRoot()).fetch(address);
+        assertTrue(r.isNotModified());
+        assertEquals(1, fullResponses.get());
+    }
+
+    @Test
+    public void gzipBodyIsDecompressedTest() throws Exception {
+        HttpCache cache = new HttpCache(folder.getRoot());
+        HttpCache.Response r = cache.fetch(address);
+        assertEquals(1, gzipped.get());
+        assertEquals(BODY, new String(HttpCache.readAll(r.openStream()),
+                StandardCharsets.UTF_8));
+        assertEquals(BODY, new String(cache.fetch(address).getBody(),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void concurrentAsyncFetchesTest() throws Exception {
+        HttpCache cache = new HttpCache(folder.getRoot());
+        List<CompletableFuture<HttpCache.Response>> fetches =
+                new ArrayList<CompletableFuture<HttpCache.Response>>();
+        for(int i = 0; i < 8; i++){
+            fetches.add(cache.fetchAsync(address + "?page=" + i));
+        }
+        for(CompletableFuture<HttpCache.Response> fetch : fetches){
+            assertEquals(BODY, new String(fetch.get().getBody(),
+                    StandardCharsets.UTF_8));
+        }
+        assertEquals(8, fullResponses.get());
+    }
+
+    @Test
+    public void maxAgeSetsExpiresTest() throws Exception {
+        HttpCache.Response r = new HttpCache(folder.getRoot()).fetch(address);
+        assertEquals(r.getFetchTime() + 600000, r.getExpires());
+        HttpCache.Response revalidated =
+                new HttpCache(folder.getRoot()).fetch(address);
+        assertTrue(revalidated.isNotModified());
+        assertEquals(revalidated.getFetchTime() + 600000,
+                revalidated.getExpires());
+    }
+
+    @Test
+    public void notModifiedOnlyRewritesMetadataTest() throws Exception {
+        HttpCache cache = new HttpCache(folder.getRoot());
+        cache.fetch(address);
+        File body = fileEndingWith(".body");
+        assertTrue(body.setLastModified(1000));
+        HttpCache.Response r = cache.fetch(address);
+        assertTrue(r.isNotModified());
+        assertEquals(BODY, new String(r.getBody(), StandardCharsets.UTF_8));
+        assertEquals(1000, body.lastModified());
+        assertEquals(r.getFetchTime(), cache.load(address).getFetchTime());
+    }
+
+    @Test
+    public void notModifiedWithoutBodyDownloadsAgainTest() throws Exception {
+        HttpCache cache = new HttpCache(folder.getRoot());
+        cache.fetch(address);
+        assertTrue(fileEndingWith(".body").delete());
+        HttpCache.Response r = cache.fetch(address);
+        assertFalse(r.isNotModified());
+        assertEquals(BODY, new String(r.getBody(), StandardCharsets.UTF_8));
+        assertEquals(2, fullResponses.get());
+    }
+
+    @Test
+    public void failedBodyWriteLeavesNoValidatorsTest() throws Exception {
+        HttpCache cache = new HttpCache(folder.getRoot());
+        cache.fetch(address);
+        /*A directory in place of the body can't be replaced.*/
+        File body = fileEndingWith(".body");
+        assertTrue(body.delete());
+        assertTrue(new File(body, "blocker").mkdirs());
+        HttpCache.Response r = cache.fetch(address);
+        assertEquals(BODY, new String(r.getBody(), StandardCharsets.UTF_8));
+        assertNull(cache.load(address));
+        for(File f : folder.getRoot().listFiles()){
+            assertFalse(f.getName().endsWith(".meta"));
+            assertFalse(f.getName().endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    public void notModifiedWithoutEntryFailsTest() throws Exception {
+        alwaysNotModified = true;
+        HttpCache cache = new HttpCache(folder.getRoot());
+        try {
+            cache.fetch(address);
+            fail("A 304 without a cached body was accepted");
+        } catch (IOException e) {
+            assertNull(cache.load(address));
+        }
+    }
+
+    @Test
+    public void expiresOfTest() throws Exception {
+        assertEquals(0, HttpCache.expiresOf(null, null, null, 1000));
+        assertEquals(1000, HttpCache.expiresOf("no-cache", null, null, 1000));
+        assertEquals(61000, HttpCache.expiresOf("max-age=60",
+                "Thu, 01 Jan 1970 00:00:00 GMT", null, 1000));
+        assertEquals(1000 + 120000, HttpCache.expiresOf(null,
+                "Thu, 01 Jan 1970 00:02:30 GMT",
+                "Thu, 01 Jan 1970 00:00:30 GMT", 1000));
+        assertEquals(1000, HttpCache.expiresOf(null, "0", null, 1000));
+    }
+
+    /**
+     * Finds the one cache file with an ending.
+     * @param ending The ending, such as ".body".
+     * @return The file.
+     */
+
+    private File fileEndingWith(String ending){
+        File[] files = folder.getRoot().listFiles();
+        File found = null;
+        for(File f : files){
+            if(f.getName().endsWith(ending)){
+                assertNull(found);
+                found = f;
+            }
+        }
+        assertNotNull(found);
+        return found;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        alwaysNotModified = false;
+        fullResponses = new AtomicInteger();
+        gzipped = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Cache-Control",
+                        "public, max-age=600");
+                if(alwaysNotModified || ETAG.equals(exchange
+                        .getRequestHeaders().getFirst("If-None-Match"))){
+                    exchange.sendResponseHeaders(304, -1);
+                }else{
+                    byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+                    String accept = exchange.getRequestHeaders()
+                            .getFirst("Accept-Encoding");
+                    if(accept != null && accept.contains("gzip")){
+                        ByteArrayOutputStream bytes =
+                                new ByteArrayOutputStream();
+                        GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+                        gzip.write(body);
+                        gzip.close();
+                        body = bytes.toByteArray();
+                        exchange.getResponseHeaders().add("Content-Encoding",
+                                "gzip");
+                        gzipped.incrementAndGet();
+                    }
+                    exchange.getResponseHeaders().add("ETag", ETAG);
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                    fullResponses.incrementAndGet();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        address = "http://localhost:" + server.getAddress().getPort() +
+                "/channels/";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String BODY = "<sr><channels/></sr>";
+    private static final String ETAG = "\"v1\"";
+    private HttpServer server;
+    private AtomicInteger fullResponses;
+    private AtomicInteger gzipped;
+    private volatile boolean alwaysNotModified;
+    private String address;
+}
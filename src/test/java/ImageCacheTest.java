@@ -0,0 +1,69 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>ImageCacheTest</h1>
+ * <p>
+ * cache - The cache to test. Fits two of the test images.
+ * <p>
+ * image - 10x10 image used for tests, 400 decoded bytes.
+ *
+ * @version 1.0
+ */
+public class ImageCacheTest {
+
+    @Test
+    public void getCountsHitsAndMissesTest() throws Exception {
+        cache.put("a", image);
+        assertSame(image, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void putAccountsDecodedSizeTest() throws Exception {
+        cache.put("a", image);
+        cache.put("a", image);
+        assertEquals(400, cache.getUsedBytes());
+    }
+
+    @Test
+    public void putEvictsLeastRecentlyUsedTest() throws Exception {
+        cache.put("a", image);
+        cache.put("b", image);
+        cache.get("a");
+        cache.put("c", image);
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(800, cache.getUsedBytes());
+    }
+
+    @Test
+    public void putSkipsImageLargerThanBudgetTest() throws Exception {
+        cache.put("big", new ImageIcon(
+                new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB)));
+        assertEquals(0, cache.size());
+    }
+
+    @Before
+    public void setUp(){
+        cache = new ImageCache(800);
+        image = new ImageIcon(
+                new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache = null;
+    }
+
+    private ImageCache cache;
+    private ImageIcon image;
+}
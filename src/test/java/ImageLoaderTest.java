@@ -0,0 +1,141 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>ImageLoaderTest</h1>
+ * <p>
+ * loader - The loader to test.
+ * <p>
+ * release - Latch holding back downloads from the slow address.
+ * <p>
+ * slowAddress - Address whose download waits for the latch.
+ * <p>
+ * imageFile - File path used for image tests.
+ * <p>
+ * folder - Temporary folder for images written by the tests.
+ *
+ * @version 1.0
+ */
+public class ImageLoaderTest {
+
+    @Test
+    public void loadDownloadsImageTest() throws Exception {
+        Future<ImageIcon> image = loader.load(
+                new File(imageFile).toURI().toURL());
+        assertTrue(ImageLoader.await(image).getIconWidth() > 0);
+    }
+
+    @Test
+    public void concurrentLoadsShareDownloadTest() throws Exception {
+        Future<ImageIcon> first = loader.load(slowAddress);
+        Future<ImageIcon> second = loader.load(slowAddress);
+        assertSame(first, second);
+        assertNull(ImageLoader.getNow(first));
+        release.countDown();
+        ImageLoader.await(first);
+        assertTrue(first.isDone());
+    }
+
+    @Test
+    public void getNowWithoutImageTest() throws Exception {
+        assertNull(ImageLoader.getNow(null));
+        assertNull(ImageLoader.await(null));
+    }
+
+    @Test
+    public void awaitRunsQueuedDownloadTest() throws Exception {
+        IoExecutor images = new IoExecutor(false, 1);
+        images.execute(new Runnable() {
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final ImageLoader queued = new ImageLoader(new ImageCache(), images);
+        final URL address = new File(imageFile).toURI().toURL();
+        IoExecutor io = new IoExecutor(false, 1);
+        Future<ImageIcon> awaited = io.submit(new Callable<ImageIcon>() {
+            public ImageIcon call() {
+                return ImageLoader.await(queued.load(address));
+            }
+        });
+        assertTrue(awaited.get(5, TimeUnit.SECONDS).getIconWidth() > 0);
+    }
+
+    @Test
+    public void loadedImageHitsThumbnailCacheTest() throws Exception {
+        URL address = new File(imageFile).toURI().toURL();
+        ImageIcon image = ImageLoader.await(loader.load(address));
+        assertEquals(address.toString(), image.getDescription());
+        ThumbnailCache thumbnails = new ThumbnailCache(
+                new ImageCache(1024 * 1024), new IoExecutor(false, 1));
+        ImageIcon scaled = thumbnails.scale(address, image, 30, 31)
+                .get(5, TimeUnit.SECONDS);
+        assertSame(scaled, thumbnails.getCached(address, 30, 31));
+        assertEquals(1, thumbnails.getCache().size());
+    }
+
+    @Test
+    public void undecodableImageIsNotCachedTest() throws Exception {
+        File broken = folder.newFile("broken.png");
+        Files.write(broken.toPath(), "not an image".getBytes("UTF-8"));
+        URL address = broken.toURI().toURL();
+        assertNull(ImageLoader.await(loader.load(address)));
+        assertNull(loader.getCached(address));
+    }
+
+    @Test
+    public void awaitCancelledDownloadTest() throws Exception {
+        Future<ImageIcon> image = loader.load(slowAddress);
+        image.cancel(true);
+        assertNull(ImageLoader.await(image));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        loader = new ImageLoader();
+        release = new CountDownLatch(1);
+        slowAddress = new URL(null, "slow:image", new URLStreamHandler() {
+            protected URLConnection openConnection(URL u) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return new File(imageFile).toURI().toURL().openConnection();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        loader = null;
+    }
+
+    private ImageLoader loader;
+    private CountDownLatch release;
+    private URL slowAddress;
+    private String imageFile = "src/main/resources/default.png";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+}
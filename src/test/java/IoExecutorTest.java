@@ -0,0 +1,147 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>IoExecutorTest</h1>
+ * <p>
+ * executor - Executor on platform threads that runs two tasks at once.
+ * <p>
+ * release - Opened to let the blocking tasks finish.
+ *
+ * @version 1.0
+ */
+public class IoExecutorTest {
+
+    @Test
+    public void limitQueuesExtraTasksTest() throws Exception {
+        Future<?> first = executor.submit(blocking());
+        Future<?> second = executor.submit(blocking());
+        Future<?> third = executor.submit(blocking());
+        awaitCounts(2, 1);
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        third.get(5, TimeUnit.SECONDS);
+        awaitCounts(0, 0);
+        assertEquals(3, executor.getCompletedCount());
+    }
+
+    @Test
+    public void scopeCancelInterruptsRunningTasksTest() throws Exception {
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final CountDownLatch started = new CountDownLatch(1);
+        IoExecutor.Scope scope = executor.newScope();
+        Future<?> running = scope.submit(new Callable<Object>() {
+            public Object call() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+                return null;
+            }
+        });
+        Future<?> other = scope.submit(blocking());
+        Future<?> waiting = scope.submit(blocking());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        scope.cancel();
+        assertTrue(running.isCancelled());
+        assertTrue(waiting.isCancelled());
+        awaitCounts(0, 0);
+        assertTrue(interrupted.get());
+        assertEquals(0, scope.getPendingCount());
+        try {
+            other.get();
+            fail();
+        } catch (CancellationException e) {
+            /*Expected.*/
+        }
+    }
+
+    @Test
+    public void cancelledScopeCancelsNewTasksTest() throws Exception {
+        IoExecutor.Scope scope = executor.newScope();
+        scope.cancel();
+        assertTrue(scope.submit(blocking()).isCancelled());
+        awaitCounts(0, 0);
+    }
+
+    @Test
+    public void fallsBackWithoutVirtualThreadsTest() throws Exception {
+        boolean available;
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            available = Runtime.version().feature() >= 21;
+        } catch (NoSuchMethodException e) {
+            available = false;
+        }
+        IoExecutor preferring = new IoExecutor(true, 2);
+        if(!available){
+            assertFalse(preferring.isVirtual());
+        }
+        assertEquals("done", preferring.submit(new Callable<String>() {
+            public String call() {
+                return "done";
+            }
+        }).get(5, TimeUnit.SECONDS));
+        assertFalse(executor.isVirtual());
+    }
+
+    /**
+     * Creates a task that waits until release is opened.
+     * @return The task.
+     */
+
+    private Callable<Object> blocking(){
+        return new Callable<Object>() {
+            public Object call() throws Exception {
+                release.await();
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Waits up to five seconds for the executor to reach the provided
+     * counts.
+     * @param active The amount of running tasks to wait for.
+     * @param queued The amount of waiting tasks to wait for.
+     */
+
+    private void awaitCounts(int active, int queued) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while((executor.getActiveCount() != active ||
+                executor.getQueuedCount() != queued) &&
+                System.currentTimeMillis() < end){
+            Thread.sleep(10);
+        }
+        assertEquals(active, executor.getActiveCount());
+        assertEquals(queued, executor.getQueuedCount());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        executor = new IoExecutor(false, 2);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+    }
+
+    private IoExecutor executor;
+    private CountDownLatch release;
+}
@@ -0,0 +1,217 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import javax.swing.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>LoadCoordinatorTest</h1>
+ * <p>
+ * folder - Temporary folder for the cached responses.
+ * <p>
+ * server - Stub server that answers every request with the bundled
+ * program file, waiting SLOW ms and then for hold first for the slow
+ * channel.
+ * <p>
+ * hold - Latch holding back the answers for the slow channel. Open
+ * unless a test closes it.
+ * <p>
+ * m - The model whose channels are loaded.
+ * <p>
+ * slow - A channel whose schedule is slow to download.
+ * <p>
+ * fast - A channel whose schedule downloads right away.
+ * <p>
+ * executor - Runs the loads.
+ * <p>
+ * coordinator - The coordinator to test.
+ * <p>
+ * told - What the listeners have been told, as channel name and tag.
+ *
+ * @version 1.0
+ */
+public class LoadCoordinatorTest {
+
+    @Test
+    public void laterChoiceCancelsEarlierLoadTest() throws Exception {
+        Future<?> first = coordinator.load(slow, listener("first"));
+        Future<?> second = coordinator.load(fast, listener("second"));
+        assertTrue(first.isCancelled());
+        second.get(10, TimeUnit.SECONDS);
+        flushEdt();
+        assertEquals(Arrays.asList("P3:second"), told);
+        assertEquals(1, coordinator.getCancelledCount());
+        assertNotNull(fast.getTablePageCount());
+        awaitIdle();
+        assertNull(slow.getTablePageCount());
+    }
+
+    @Test
+    public void repeatedChoiceJoinsRunningLoadTest() throws Exception {
+        Future<?> first = coordinator.load(slow, listener("first"));
+        Future<?> second = coordinator.load(slow, listener("second"));
+        assertSame(first, second);
+        second.get(10, TimeUnit.SECONDS);
+        flushEdt();
+        assertEquals(Arrays.asList("P1:second"), told);
+        assertEquals(1, coordinator.getStartedCount());
+        assertEquals(1, coordinator.getCoalescedCount());
+        assertEquals(0, coordinator.getRunningCount());
+    }
+
+    @Test
+    public void cancelDropsRunningLoadTest() throws Exception {
+        Future<?> load = coordinator.load(slow, listener("first"));
+        coordinator.cancel();
+        assertTrue(load.isCancelled());
+        awaitIdle();
+        flushEdt();
+        assertTrue(told.isEmpty());
+        assertEquals(0, coordinator.getRunningCount());
+    }
+
+    @Test
+    public void cancelledLoadLeavesQueueBehindUpdateTest() throws Exception {
+        hold = new CountDownLatch(1);
+        Thread update = new Thread(new Runnable() {
+            public void run() {
+                m.updateSchedule(slow);
+            }
+        });
+        update.start();
+        while(!slow.getLoadLock().isLocked()){
+            Thread.sleep(5);
+        }
+        Future<?> load = coordinator.load(slow, listener("first"));
+        long end = System.currentTimeMillis() + 5000;
+        while(!slow.getLoadLock().hasQueuedThreads() &&
+                System.currentTimeMillis() < end){
+            Thread.sleep(5);
+        }
+        assertTrue(slow.getLoadLock().hasQueuedThreads());
+        coordinator.cancel();
+        assertTrue(load.isCancelled());
+        awaitIdle();
+        assertTrue(slow.getLoadLock().isLocked());
+        hold.countDown();
+        update.join(10000);
+        flushEdt();
+        assertTrue(told.isEmpty());
+    }
+
+    /**
+     * Creates a listener that records the channels it is told about.
+     * @param tag Recorded with the channel name.
+     * @return The listener.
+     */
+
+    private LoadCoordinator.Listener listener(final String tag){
+        return new LoadCoordinator.Listener() {
+            public void loaded(RadioChannel rc, ImageIcon image) {
+                told.add(rc.getName() + ":" + tag);
+            }
+        };
+    }
+
+    /**
+     * Waits until everything already put on the EDT has run.
+     */
+
+    private static void flushEdt() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * Waits up to five seconds for all loads to have stopped.
+     */
+
+    private void awaitIdle() throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while((executor.getActiveCount() > 0 ||
+                executor.getQueuedCount() > 0) &&
+                System.currentTimeMillis() < end){
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        final byte[] body = Files.readAllBytes(
+                Paths.get("src/main/resources/p3programsedit.xml"));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if(exchange.getRequestURI().getQuery().contains(
+                        "channelid=132")){
+                    try {
+                        Thread.sleep(SLOW);
+                        hold.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        hold = new CountDownLatch(0);
+        m = new RadioModel("unused", "http://localhost:" +
+                server.getAddress().getPort() + "/scheduledepisodes?",
+                new HttpCache(folder.newFolder()));
+        slow = new RadioChannel("P1", "132");
+        fast = new RadioChannel("P3", "164");
+        executor = new IoExecutor(false, 4);
+        coordinator = new LoadCoordinator(m, null, executor);
+        told = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hold.countDown();
+        coordinator.cancel();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final long SLOW = 500;
+    private HttpServer server;
+    private volatile CountDownLatch hold;
+    private RadioModel m;
+    private ExecutorService serverThreads;
+    private RadioChannel slow;
+    private RadioChannel fast;
+    private IoExecutor executor;
+    private LoadCoordinator coordinator;
+    private List<String> told;
+}
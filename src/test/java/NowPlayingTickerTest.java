@@ -0,0 +1,99 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>NowPlayingTickerTest</h1>
+ * <p>
+ * ticker - The ticker to test.
+ * <p>
+ * rc - Channel with programs at 05:00 and 18:00 that are two minutes long.
+ * <p>
+ * base - Midnight of the day the programs are on, in milliseconds.
+ * <p>
+ * marks - The marked programs the ticker has told about.
+ *
+ * @version 1.0
+ */
+public class NowPlayingTickerTest {
+
+    @Test
+    public void tickMarksAndWaitsForNextBoundaryTest() throws Exception {
+        ticker.show(rc);
+        ticker.tick(at(5, 1));
+        assertEquals(at(5, 2), ticker.getNextWakeup());
+        ticker.tick(at(5, 3));
+        assertEquals(at(18, 0), ticker.getNextWakeup());
+        assertTrue(ticker.isRunning());
+        ticker.tick(at(18, 3));
+        assertEquals(Long.MAX_VALUE, ticker.getNextWakeup());
+        assertFalse(ticker.isRunning());
+        assertEquals(Arrays.asList(-1, 0, 1), marks.subList(1, 4));
+        assertEquals(1, rc.getMarkedProgram());
+    }
+
+    @Test
+    public void stopForgetsChannelTest() throws Exception {
+        ticker.show(rc);
+        ticker.stop();
+        ticker.tick(at(5, 3));
+        assertFalse(ticker.isRunning());
+        assertEquals(Long.MAX_VALUE, ticker.getNextWakeup());
+        assertEquals(1, marks.size());
+    }
+
+    /**
+     * Gets a time on the day of the programs.
+     * @param hour The hour.
+     * @param minute The minute.
+     * @return The time in milliseconds.
+     */
+
+    private long at(int hour, int minute){
+        return base + (hour * 60L + minute) * 60 * 1000;
+    }
+
+    /**
+     * Creates a parsed program that starts on the hour and lasts two
+     * minutes.
+     * @param name The name of the program.
+     * @param hour The hour the program starts.
+     * @return The program.
+     */
+
+    private static RadioProgram program(String name, String hour){
+        RadioProgram rp = new RadioProgram(name);
+        rp.setStartString("2017-12-10T" + hour + ":00:00Z");
+        rp.setEndString("2017-12-10T" + hour + ":02:00Z");
+        rp.parseDates();
+        return rp;
+    }
+
+    @Before
+    public void setUp(){
+        rc = new RadioChannel("P1", "132");
+        rc.getPrograms().add(program("Fiver", "05"));
+        rc.getPrograms().add(program("Gusto", "18"));
+        base = rc.getPrograms().get(0).getStartMillis() - 5 * 60 * 60 * 1000;
+        marks = new ArrayList<Integer>();
+        ticker = new NowPlayingTicker(new NowPlayingTicker.Listener() {
+            public void marked(RadioChannel channel, int marked) {
+                marks.add(marked);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ticker.stop();
+    }
+
+    private NowPlayingTicker ticker;
+    private RadioChannel rc;
+    private long base;
+    private List<Integer> marks;
+}
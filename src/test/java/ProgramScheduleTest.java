@@ -0,0 +1,176 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Iterator;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>ProgramScheduleTest</h1>
+ * <p>
+ * ps - Schedule to test, with programs at 05:00, 18:00 and 23:00 that are
+ * two minutes long, added out of order.
+ * <p>
+ * base - Midnight of the day the programs are on, in milliseconds.
+ *
+ * @version 1.0
+ */
+public class ProgramScheduleTest {
+
+    @Test
+    public void addKeepsStartOrderTest() throws Exception {
+        assertEquals("Fiver", ps.get(0).getName());
+        assertEquals("Gusto", ps.get(1).getName());
+        assertEquals("News", ps.get(2).getName());
+    }
+
+    @Test
+    public void indexOfProgramOnTest() throws Exception {
+        assertEquals(1, ps.indexOfProgramOn(at(18, 1)));
+        assertEquals(-1, ps.indexOfProgramOn(at(18, 2)));
+        assertEquals(-1, ps.indexOfProgramOn(at(4, 0)));
+    }
+
+    @Test
+    public void indexOfLastEndedTest() throws Exception {
+        assertEquals(-1, ps.indexOfLastEnded(at(5, 1)));
+        assertEquals(0, ps.indexOfLastEnded(at(18, 1)));
+        assertEquals(1, ps.indexOfLastEnded(at(18, 3)));
+        assertEquals(2, ps.indexOfLastEnded(at(23, 59)));
+    }
+
+    @Test
+    public void nextBoundaryAfterTest() throws Exception {
+        assertEquals(at(5, 0), ps.nextBoundaryAfter(at(4, 0)));
+        assertEquals(at(5, 2), ps.nextBoundaryAfter(at(5, 0)));
+        assertEquals(at(18, 0), ps.nextBoundaryAfter(at(5, 2)));
+        assertEquals(Long.MAX_VALUE, ps.nextBoundaryAfter(at(23, 2)));
+    }
+
+    @Test
+    public void sliceTest() throws Exception {
+        List<RadioProgram> slice = ps.slice(at(5, 0), at(23, 0));
+        assertEquals(2, slice.size());
+        assertEquals("Gusto", slice.get(1).getName());
+    }
+
+    @Test
+    public void retainStartingBetweenTest() throws Exception {
+        ps.retainStartingBetween(at(6, 0), at(24, 0));
+        assertEquals(2, ps.size());
+        assertEquals("Gusto", ps.get(0).getName());
+        assertEquals(-1, ps.indexOfLastEnded(at(18, 1)));
+    }
+
+    @Test
+    public void mergeKeepsUnchangedProgramsTest() throws Exception {
+        RadioProgram gusto = ps.get(1);
+        ProgramSchedule fresh = new ProgramSchedule();
+        fresh.add(program("Fiver", "05"));
+        fresh.add(program("Gusto", "18"));
+        fresh.add(program("News", "23"));
+        assertFalse(ps.merge(fresh));
+        assertSame(gusto, ps.get(1));
+        assertEquals(3, ps.size());
+    }
+
+    @Test
+    public void mergeReplacesChangedProgramsTest() throws Exception {
+        RadioProgram fiver = ps.get(0);
+        ProgramSchedule fresh = new ProgramSchedule();
+        fresh.add(program("Fiver", "05"));
+        fresh.add(program("Gusto Live", "18"));
+        assertTrue(ps.merge(fresh));
+        assertEquals(2, ps.size());
+        assertSame(fiver, ps.get(0));
+        assertEquals("Gusto Live", ps.get(1).getName());
+        assertEquals(1, ps.indexOfLastEnded(at(23, 59)));
+    }
+
+    @Test
+    public void mergeDropsRepeatedEpisodesTest() throws Exception {
+        RadioProgram first = program("Night", "22");
+        first.setEpisodeId("42");
+        RadioProgram repeat = program("Night", "22");
+        repeat.setEpisodeId("42");
+        ProgramSchedule fresh = new ProgramSchedule();
+        fresh.add(first);
+        fresh.add(repeat);
+        assertTrue(ps.merge(fresh));
+        assertEquals(1, ps.size());
+        assertSame(first, ps.get(0));
+    }
+
+    @Test
+    public void iteratorKeepsSnapshotTest() throws Exception {
+        Iterator<RadioProgram> it = ps.iterator();
+        ps.add(program("Late", "23"));
+        ps.retainStartingBetween(at(6, 0), at(24, 0));
+        StringBuilder seen = new StringBuilder();
+        while(it.hasNext()){
+            seen.append(it.next().getName()).append(' ');
+        }
+        assertEquals("Fiver Gusto News ", seen.toString());
+        assertEquals(3, ps.size());
+        assertEquals("Late", ps.get(2).getName());
+    }
+
+    @Test
+    public void lookupFollowsChangesTest() throws Exception {
+        RadioProgram rerun = program("News", "22");
+        rerun.setEpisodeId("7");
+        assertNull(ps.getByEpisodeId("7"));
+        ps.add(rerun);
+        assertSame(rerun, ps.getNamed("News"));
+        assertSame(rerun, ps.getByEpisodeId("7"));
+        assertEquals("Gusto", ps.getNamed("Gusto").getName());
+        ps.retainStartingBetween(at(23, 0), at(24, 0));
+        assertEquals(at(23, 0), ps.getNamed("News").getStartMillis());
+        assertNull(ps.getByEpisodeId("7"));
+        assertNull(ps.getNamed("Gusto"));
+    }
+
+    /**
+     * Gets a time on the day of the programs.
+     * @param hour The hour.
+     * @param minute The minute.
+     * @return The time in milliseconds.
+     */
+
+    private long at(int hour, int minute){
+        return base + (hour * 60L + minute) * 60 * 1000;
+    }
+
+    /**
+     * Creates a parsed program that starts on the hour and lasts two
+     * minutes.
+     * @param name The name of the program.
+     * @param hour The hour the program starts.
+     * @return The program.
+     */
+
+    private RadioProgram program(String name, String hour){
+        RadioProgram rp = new RadioProgram(name);
+        rp.setStartString("2017-12-10T" + hour + ":00:00Z");
+        rp.setEndString("2017-12-10T" + hour + ":02:00Z");
+        rp.parseDates();
+        return rp;
+    }
+
+    @Before
+    public void setUp(){
+        ps = new ProgramSchedule();
+        ps.add(program("Gusto", "18"));
+        ps.add(program("News", "23"));
+        ps.add(program("Fiver", "05"));
+        base = ps.get(0).getStartTime().getTimeInMillis() - 5 * 60 * 60 * 1000;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ps = null;
+    }
+
+    private ProgramSchedule ps;
+    private long base;
+}
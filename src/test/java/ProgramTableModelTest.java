@@ -0,0 +1,113 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>ProgramTableModelTest</h1>
+ * <p>
+ * model - The model to test, showing ps.
+ * <p>
+ * ps - Schedule with programs at 05:00, 18:00 and 23:00.
+ * <p>
+ * events - The events the model has fired since it started showing ps,
+ * as type and rows.
+ *
+ * @version 1.0
+ */
+public class ProgramTableModelTest {
+
+    @Test
+    public void showsProgramsOfScheduleTest() throws Exception {
+        assertEquals(3, model.getRowCount());
+        assertEquals(3, model.getColumnCount());
+        assertEquals("Start", model.getColumnName(1));
+        assertEquals("Gusto", model.getValueAt(1, 0));
+        assertEquals(ps.get(1).getFormattedStartTime(),
+                model.getValueAt(1, 1));
+        assertSame(ps.get(2), model.getProgramAt(2));
+        assertFalse(model.isCellEditable(0, 0));
+    }
+
+    @Test
+    public void refreshReportsChangedRowsTest() throws Exception {
+        ProgramSchedule fresh = new ProgramSchedule();
+        fresh.add(program("Gusto", "18"));
+        fresh.add(program("Night", "22"));
+        fresh.add(program("News Extra", "23"));
+        assertTrue(ps.merge(fresh));
+        model.setSchedule(ps);
+        assertEquals(Arrays.asList("delete 0-0", "insert 1-1",
+                "update 2-2"), events);
+        assertEquals(3, model.getRowCount());
+        assertEquals("Night", model.getValueAt(1, 0));
+        assertEquals("News Extra", model.getValueAt(2, 0));
+    }
+
+    @Test
+    public void unchangedRefreshFiresNothingTest() throws Exception {
+        model.setSchedule(ps);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void otherScheduleReplacesAllRowsTest() throws Exception {
+        ProgramSchedule other = new ProgramSchedule();
+        other.add(program("Other", "10"));
+        model.setSchedule(other);
+        model.setSchedule(null);
+        assertEquals(Arrays.asList("update 0-" + Integer.MAX_VALUE,
+                "update 0-" + Integer.MAX_VALUE), events);
+        assertEquals(0, model.getRowCount());
+    }
+
+    /**
+     * Creates a parsed program that starts on the hour and lasts two
+     * minutes.
+     * @param name The name of the program.
+     * @param hour The hour the program starts.
+     * @return The program.
+     */
+
+    private static RadioProgram program(String name, String hour){
+        RadioProgram rp = new RadioProgram(name);
+        rp.setStartString("2017-12-10T" + hour + ":00:00Z");
+        rp.setEndString("2017-12-10T" + hour + ":02:00Z");
+        rp.parseDates();
+        return rp;
+    }
+
+    @Before
+    public void setUp(){
+        ps = new ProgramSchedule();
+        ps.add(program("Fiver", "05"));
+        ps.add(program("Gusto", "18"));
+        ps.add(program("News", "23"));
+        model = new ProgramTableModel();
+        model.setSchedule(ps);
+        events = new ArrayList<String>();
+        model.addTableModelListener(new TableModelListener() {
+            public void tableChanged(TableModelEvent e) {
+                String type = e.getType() == TableModelEvent.INSERT
+                        ? "insert" : e.getType() == TableModelEvent.DELETE
+                        ? "delete" : "update";
+                events.add(type + " " + e.getFirstRow() + "-" +
+                        e.getLastRow());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        model = null;
+    }
+
+    private ProgramTableModel model;
+    private ProgramSchedule ps;
+    private List<String> events;
+}
@@ -5,6 +5,10 @@ import org.junit.Test;
 import org.xml.sax.InputSource;
 
 import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.*;
 
@@ -19,6 +23,8 @@ import static org.junit.Assert.*;
  * <p>
  * channelsFile - File path used for channel-related tests.
  * <p>
+ * parsed - The channels parsed before they are added to m.
+ * <p>
  *
  * @author  Victor Gustafsson, dv16vgn
  * @version 1.0
@@ -29,7 +35,8 @@ public class RadioModelTest {
     public void parseCorrectAmountOfRadioChannelsTest() throws Exception {
         fis = new FileInputStream(channelsFile);
         is = new InputSource(fis);
-        m.getParser().getRadioChannelsFromSource(is, m.getRadioChannels());
+        m.getParser().getRadioChannelsFromSource(is, parsed);
+        m.addChannels(parsed);
         Assert.assertEquals(10, m.getRadioChannels().size()) ;
     }
 
@@ -37,13 +44,50 @@ public class RadioModelTest {
     public void parseCorrectRadioChannelTest() throws Exception {
         fis = new FileInputStream(channelsFile);
         is = new InputSource(fis);
-        m.getParser().getRadioChannelsFromSource(is, m.getRadioChannels());
+        m.getParser().getRadioChannelsFromSource(is, parsed);
+        m.addChannels(parsed);
         Assert.assertEquals("P2", m.getRadioChannelByNameOf("P2").getName());
     }
 
+    @Test
+    public void channelIndexesTest() throws Exception {
+        RadioChannel p1 = new RadioChannel("P1", "132");
+        RadioChannel other = new RadioChannel("P1", "999");
+        m.addChannels(Arrays.asList(p1, other));
+        assertSame(p1, m.getRadioChannelByNameOf("P1"));
+        assertSame(p1, m.getRadioChannelById("132"));
+        assertSame(other, m.getRadioChannelById("999"));
+        assertNull(m.getRadioChannelById("164"));
+        assertNull(m.getRadioChannelByNameOf(null));
+    }
+
+    @Test
+    public void interruptedWaitForLoadTest() throws Exception {
+        final RadioChannel p1 = new RadioChannel("P1", "132");
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        p1.getLoadLock().lock();
+        try {
+            Thread waiting = new Thread(new Runnable() {
+                public void run() {
+                    m.loadScheduleIfStale(p1);
+                    interrupted.set(Thread.currentThread().isInterrupted());
+                }
+            });
+            waiting.start();
+            waiting.interrupt();
+            waiting.join(5000);
+            assertFalse(waiting.isAlive());
+            assertTrue(interrupted.get());
+            assertEquals(0, p1.getPrograms().size());
+        } finally {
+            p1.getLoadLock().unlock();
+        }
+    }
+
     @Before
     public void setUp(){
         m = new RadioModel(0);
+        parsed = new ArrayList<RadioChannel>();
     }
 
     @After
@@ -55,4 +99,5 @@ public class RadioModelTest {
     private FileInputStream fis;
     private InputSource is;
     private String channelsFile = "src/main/resources/channels.xml";
+    private List<RadioChannel> parsed;
 }
\ No newline at end of file
@@ -28,6 +28,39 @@ public class RadioProgramTest {
         assertEquals(0, c.compareTo(rp.getEndTime()));
     }
 
+    @Test
+    public void parseDatesCheckMillisTest() throws Exception {
+        rp.parseDates();
+        assertEquals(c.getTimeInMillis(), rp.getStartMillis());
+        assertEquals(c.getTimeInMillis() + 2 * 60 * 1000, rp.getEndMillis());
+    }
+
+    @Test
+    public void parseTimeAcrossYearTest() throws Exception {
+        for(int month = 0; month < 12; month++){
+            c.set(2016, month, 29, 23, 59, 58);
+            String s = String.format("2016-%02d-29T23:59:58Z", month + 1);
+            assertEquals(s, c.getTimeInMillis(), RadioProgram.parseTime(s));
+        }
+    }
+
+    @Test
+    public void parseTimeFractionTest() throws Exception {
+        assertEquals(c.getTimeInMillis(),
+                RadioProgram.parseTime("2017-12-10T05:00:00.000Z"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseTimeBadStringTest() throws Exception {
+        RadioProgram.parseTime("2017-12-10 05:00:00Z");
+    }
+
+    @Test
+    public void formattedStartTimeTest() throws Exception {
+        rp.parseDates();
+        assertEquals("12/10 | 05:00:00", rp.getFormattedStartTime());
+    }
+
     @Before
     public void setUp(){
         rp = new RadioProgram("Moogle News");
@@ -0,0 +1,193 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>RefreshSchedulerTest</h1>
+ * <p>
+ * m - Model whose refreshes only count, wait a moment and, if succeed is
+ * set, mark the channel as refreshed.
+ * <p>
+ * scheduler - The scheduler to test, refreshing one channel at a time.
+ * <p>
+ * executor - Runs the refreshes of scheduler.
+ * <p>
+ * rc - Channel for the due time tests.
+ * <p>
+ * t - The time rc was first loaded, in milliseconds.
+ * <p>
+ * succeed - True if the refreshes of m get through.
+ * <p>
+ * calls - The amount of refreshes m has run.
+ * <p>
+ * running - The amount of refreshes of m running right now.
+ * <p>
+ * maxRunning - The most refreshes of m that have run at once.
+ *
+ * @version 1.0
+ */
+public class RefreshSchedulerTest {
+
+    @Test
+    public void changedChannelIsDueSoonTest() throws Exception {
+        rc.recordRefresh(t, true, 0);
+        assertEquals(t + RefreshScheduler.MIN_INTERVAL,
+                RefreshScheduler.dueTime(rc));
+    }
+
+    @Test
+    public void quietChannelWaitsLongerTest() throws Exception {
+        rc.recordRefresh(t, true, 0);
+        rc.recordRefresh(t + 4 * HOUR, false, 0);
+        rc.setLoadedWindow(t + 3 * HOUR, t + 16 * HOUR);
+        assertEquals(t + 6 * HOUR, RefreshScheduler.dueTime(rc));
+    }
+
+    @Test
+    public void serverFreshnessStretchesWaitTest() throws Exception {
+        rc.recordRefresh(t, true, 0);
+        rc.recordRefresh(t + 4 * HOUR, false, t + 9 * HOUR);
+        rc.setLoadedWindow(t + 3 * HOUR, t + 16 * HOUR);
+        assertEquals(t + 9 * HOUR, RefreshScheduler.dueTime(rc));
+        rc.recordRefresh(t + 4 * HOUR, false, t + 20 * HOUR);
+        assertEquals(t + 10 * HOUR, RefreshScheduler.dueTime(rc));
+    }
+
+    @Test
+    public void loadedRangeEdgeCutsWaitTest() throws Exception {
+        rc.recordRefresh(t, true, 0);
+        rc.recordRefresh(t + 4 * HOUR, false, t + 9 * HOUR);
+        rc.setLoadedWindow(t + 3 * HOUR, t + 11 * HOUR);
+        assertEquals(t + 5 * HOUR, RefreshScheduler.dueTime(rc));
+        rc.setLoadedWindow(t + 3 * HOUR, t + 10 * HOUR);
+        assertEquals(t + 4 * HOUR + RefreshScheduler.MIN_INTERVAL,
+                RefreshScheduler.dueTime(rc));
+    }
+
+    @Test
+    public void refreshesDueChannelsOneAtATimeTest() throws Exception {
+        long overdue = System.currentTimeMillis() - 24 * HOUR;
+        for(int i = 0; i < 3; i++){
+            RadioChannel loaded = new RadioChannel("P" + i, "" + i);
+            loaded.recordRefresh(overdue, true, 0);
+            m.addChannels(Collections.singletonList(loaded));
+        }
+        m.addChannels(Collections.singletonList(
+                new RadioChannel("Never", "9")));
+        scheduler.start();
+        awaitCalls(3);
+        awaitIdle();
+        assertEquals(1, maxRunning.get());
+        /*Refreshed channels aren't due again right away.*/
+        long now = System.currentTimeMillis();
+        for(long due : scheduler.getDueTimes().values()){
+            assertTrue(due > now);
+        }
+        scheduler.wake(now);
+        awaitIdle();
+        assertEquals(3, calls.get());
+        assertEquals(3, scheduler.getRefreshCount());
+        assertEquals(3, scheduler.getDueTimes().size());
+    }
+
+    @Test
+    public void failedRefreshWaitsBeforeRetryTest() throws Exception {
+        succeed = false;
+        RadioChannel loaded = new RadioChannel("P1", "132");
+        loaded.recordRefresh(System.currentTimeMillis() - 24 * HOUR, true, 0);
+        m.addChannels(Collections.singletonList(loaded));
+        long start = System.currentTimeMillis();
+        scheduler.start();
+        awaitCalls(1);
+        awaitIdle();
+        long due = scheduler.getDueTimes().get(loaded);
+        assertTrue(due >= start + RefreshScheduler.MIN_INTERVAL);
+        scheduler.wake(due - 1);
+        awaitIdle();
+        assertEquals(1, calls.get());
+        assertEquals(1, scheduler.getRefreshCount());
+        scheduler.wake(due);
+        awaitCalls(2);
+    }
+
+    /**
+     * Waits up to five seconds for m to have run an amount of refreshes.
+     * @param count The amount of refreshes to wait for.
+     */
+
+    private void awaitCalls(int count) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while(calls.get() < count && System.currentTimeMillis() < end){
+            Thread.sleep(10);
+        }
+        assertEquals(count, calls.get());
+    }
+
+    /**
+     * Waits up to five seconds for the refreshes that have been started
+     * to be done.
+     */
+
+    private void awaitIdle() throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while((executor.getActiveCount() > 0 ||
+                executor.getQueuedCount() > 0) &&
+                System.currentTimeMillis() < end){
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.getActiveCount());
+        assertEquals(0, executor.getQueuedCount());
+    }
+
+    @Before
+    public void setUp(){
+        succeed = true;
+        calls = new AtomicInteger();
+        running = new AtomicInteger();
+        maxRunning = new AtomicInteger();
+        m = new RadioModel(0){
+            @Override
+            public boolean updateSchedule(RadioChannel channel) {
+                int now = running.incrementAndGet();
+                while(maxRunning.get() < now){
+                    maxRunning.compareAndSet(maxRunning.get(), now);
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                if(succeed){
+                    channel.recordRefresh(System.currentTimeMillis(), false,
+                            0);
+                }
+                calls.incrementAndGet();
+                return false;
+            }
+        };
+        executor = new IoExecutor(false, 4);
+        scheduler = new RefreshScheduler(m, null, executor, 1);
+        rc = new RadioChannel("P3", "164");
+        t = 1000 * HOUR;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.stop();
+    }
+
+    private static final long HOUR = RefreshScheduler.HOUR;
+    private RadioModel m;
+    private RefreshScheduler scheduler;
+    private IoExecutor executor;
+    private RadioChannel rc;
+    private long t;
+    private volatile boolean succeed;
+    private AtomicInteger calls;
+    private AtomicInteger running;
+    private AtomicInteger maxRunning;
+}
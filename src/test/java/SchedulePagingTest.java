@@ -0,0 +1,487 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>SchedulePagingTest</h1>
+ * Counts the schedule requests RadioModel makes against a local stub
+ * server for the different page size settings.
+ * <p>
+ * folder - Temporary folder for the cached responses.
+ * <p>
+ * server - Stub server with PROGRAMS_PER_DAY programs every day.
+ * <p>
+ * requests - The amount of requests the server has answered.
+ * <p>
+ * dates - The days the server has been asked for.
+ * <p>
+ * pageCap - The largest page the server hands out, 0 for no cap.
+ * <p>
+ * slowDate - A day whose pages the server answers slower than the rest.
+ * <p>
+ * failing - True if the server answers every request with a 500.
+ * <p>
+ * apiDays - True if the server answers like the API does, with every day
+ * starting at 23:00 the day before and also listing the first program of
+ * the next day, and with ETags so that unchanged pages are answered with
+ * a 304.
+ * <p>
+ * versions - How many times every day has changed, by date.
+ * <p>
+ * notModified - The amount of 304s the server has answered with.
+ * <p>
+ * brokenDate - A day whose pages the server answers with broken XML.
+ * <p>
+ * programsAddress - The schedule address of the stub server.
+ *
+ * @version 1.0
+ */
+public class SchedulePagingTest {
+
+    @Test
+    public void unpaginatedScheduleTakesOneRequestPerDayTest()
+            throws Exception {
+        RadioChannel rc = update("all");
+        assertEquals(2, requests.get());
+        assertTrue(rc.getPrograms().size() > 0);
+    }
+
+    @Test
+    public void cappedPageSizeFallsBackToPagesTest() throws Exception {
+        int expected = update("all").getPrograms().size();
+        requests.set(0);
+        pageCap = 20;
+        RadioChannel rc = update("all");
+        assertEquals(2 * 3, requests.get());
+        assertEquals(expected, rc.getPrograms().size());
+    }
+
+    @Test
+    public void apiDefaultPageSizeTest() throws Exception {
+        int expected = update("all").getPrograms().size();
+        requests.set(0);
+        RadioChannel rc = update("default");
+        assertEquals(2 * 6, requests.get());
+        assertEquals(expected, rc.getPrograms().size());
+    }
+
+    @Test
+    public void explicitPageSizeTest() throws Exception {
+        update("30");
+        assertEquals(2 * 2, requests.get());
+    }
+
+    @Test
+    public void daysAreMergedInOrderTest() throws Exception {
+        slowDate = new SimpleDateFormat("yyyy-MM-dd").format(
+                new Date(System.currentTimeMillis() - DAY));
+        RadioChannel rc = update("20");
+        for(int i = 1; i < rc.getPrograms().size(); i++){
+            assertTrue(rc.getPrograms().get(i - 1).getStartTime().before(
+                    rc.getPrograms().get(i).getStartTime()));
+        }
+    }
+
+    @Test
+    public void failedUpdateKeepsProgramsTest() throws Exception {
+        RadioModel m = new RadioModel("unused", programsAddress,
+                new HttpCache(folder.newFolder()));
+        RadioChannel rc = new RadioChannel("P3", "164");
+        m.updateSchedule(rc);
+        int expected = rc.getPrograms().size();
+        assertNull(m.pollError());
+
+        failing = true;
+        m.setSchedulePageSize("30");
+        assertFalse(m.updateSchedule(rc));
+        assertEquals(expected, rc.getPrograms().size());
+        assertNotNull(m.pollError());
+        assertNull(m.pollError());
+    }
+
+    @Test
+    public void unchangedRefreshKeepsProgramsTest() throws Exception {
+        RadioModel m = new RadioModel("unused", programsAddress,
+                new HttpCache(folder.newFolder()));
+        RadioChannel rc = new RadioChannel("P3", "164");
+        assertTrue(m.updateSchedule(rc, today(6)));
+        RadioProgram first = rc.getPrograms().get(0);
+        int size = rc.getPrograms().size();
+
+        assertFalse(m.updateSchedule(rc, today(6)));
+        assertSame(first, rc.getPrograms().get(0));
+        assertEquals(size, rc.getPrograms().size());
+    }
+
+    @Test
+    public void laterRefreshOnlyFetchesTouchedDaysTest() throws Exception {
+        RadioModel m = new RadioModel("unused", programsAddress,
+                new HttpCache(folder.newFolder()));
+        RadioChannel rc = new RadioChannel("P3", "164");
+        m.updateSchedule(rc, today(6));
+        RadioProgram morning = rc.getPrograms().get(
+                rc.getPrograms().indexOfProgramOn(
+                        today(10).getTimeInMillis()));
+        requests.set(0);
+        dates.clear();
+
+        Calendar evening = today(20);
+        assertTrue(m.updateSchedule(rc, evening));
+        assertEquals(2, requests.get());
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+        Calendar tomorrow = today(0);
+        tomorrow.add(Calendar.DAY_OF_MONTH, 1);
+        assertTrue(dates.contains(df.format(tomorrow.getTime())));
+        assertFalse(dates.contains(df.format(new Date(
+                evening.getTimeInMillis() - DAY))));
+
+        assertSame(morning, rc.getPrograms().get(
+                rc.getPrograms().indexOfProgramOn(
+                        today(10).getTimeInMillis())));
+        RadioProgram last = rc.getPrograms().get(
+                rc.getPrograms().size() - 1);
+        assertTrue(last.getStartMillis() >= tomorrow.getTimeInMillis());
+        assertTrue(rc.getPrograms().get(0).getStartMillis() >
+                today(6).getTimeInMillis());
+    }
+
+    @Test
+    public void staleChannelIsRefreshedTest() throws Exception {
+        RadioModel m = new RadioModel("unused", programsAddress,
+                new HttpCache(folder.newFolder()));
+        RadioChannel rc = new RadioChannel("P3", "164");
+        m.loadScheduleIfStale(rc);
+        assertFalse(m.isStale(rc));
+        int size = rc.getPrograms().size();
+        requests.set(0);
+        m.loadScheduleIfStale(rc);
+        assertEquals(0, requests.get());
+
+        m.requestRefresh();
+        assertTrue(m.isStale(rc));
+        assertEquals(size, rc.getPrograms().size());
+        m.loadScheduleIfStale(rc);
+        assertTrue(requests.get() > 0);
+        assertFalse(m.isStale(rc));
+    }
+
+    @Test
+    public void unchangedDayKeepsProgramsBeforeMidnightTest()
+            throws Exception {
+        apiDays = true;
+        RadioModel m = new RadioModel("unused", programsAddress,
+                new HttpCache(folder.newFolder()));
+        RadioChannel rc = new RadioChannel("P3", "164");
+        assertTrue(m.updateSchedule(rc, today(6)));
+        int size = rc.getPrograms().size();
+
+        versions.put(dateOf(today(6).getTimeInMillis() - DAY), 1);
+        assertTrue(m.updateSchedule(rc, today(6)));
+        assertEquals(1, notModified.get());
+        assertEquals(size, rc.getPrograms().size());
+        long lastEvening = utcMidnight(0) - HOUR;
+        assertEquals("Program 0", rc.getPrograms().get(
+                rc.getPrograms().indexOfProgramOn(lastEvening)).getName());
+        assertTrue(rc.getPrograms().get(rc.getPrograms().indexOfProgramOn(
+                lastEvening - 2 * HOUR)).getName().endsWith(" v1"));
+    }
+
+    @Test
+    public void changedDayWinsOverUnchangedDayTest() throws Exception {
+        apiDays = true;
+        RadioModel m = new RadioModel("unused", programsAddress,
+                new HttpCache(folder.newFolder()));
+        RadioChannel rc = new RadioChannel("P3", "164");
+        assertTrue(m.updateSchedule(rc, today(6)));
+        int size = rc.getPrograms().size();
+
+        versions.put(dateOf(today(6).getTimeInMillis()), 1);
+        assertTrue(m.updateSchedule(rc, today(6)));
+        assertEquals(1, notModified.get());
+        assertEquals(size, rc.getPrograms().size());
+        assertEquals("Program 0 v1", rc.getPrograms().get(
+                rc.getPrograms().indexOfProgramOn(utcMidnight(0) - HOUR))
+                .getName());
+    }
+
+    @Test
+    public void failedUpdateParsesUnchangedDaysAgainTest() throws Exception {
+        apiDays = true;
+        RadioModel m = new RadioModel("unused", programsAddress,
+                new HttpCache(folder.newFolder()));
+        RadioChannel rc = new RadioChannel("P3", "164");
+        m.updateSchedule(rc, today(6));
+
+        /*Yesterday's new page is cached, but the update fails on today.*/
+        versions.put(dateOf(today(6).getTimeInMillis() - DAY), 1);
+        brokenDate = dateOf(today(6).getTimeInMillis());
+        assertFalse(m.updateSchedule(rc, today(6)));
+        assertNotNull(m.pollError());
+
+        brokenDate = "none";
+        notModified.set(0);
+        assertTrue(m.updateSchedule(rc, today(6)));
+        /*Only yesterday is a 304, the broken page replaced today's.*/
+        assertEquals(1, notModified.get());
+        assertTrue(rc.getPrograms().get(rc.getPrograms().indexOfProgramOn(
+                utcMidnight(0) - 3 * HOUR)).getName().endsWith(" v1"));
+    }
+
+    /**
+     * Updates a fresh channel with the provided page size setting, at six
+     * in the morning so that the kept time span touches yesterday and
+     * today.
+     * @param pageSize The page size setting.
+     * @return The updated channel.
+     */
+
+    private RadioChannel update(String pageSize) throws Exception {
+        RadioModel m = new RadioModel("unused", programsAddress,
+                new HttpCache(folder.newFolder()));
+        m.setSchedulePageSize(pageSize);
+        RadioChannel rc = new RadioChannel("P3", "164");
+        m.updateSchedule(rc, today(6));
+        return rc;
+    }
+
+    /**
+     * Gets a time on the hour today.
+     * @param hour The hour.
+     * @return The time.
+     */
+
+    private static Calendar today(int hour){
+        Calendar c = Calendar.getInstance();
+        c.set(Calendar.HOUR_OF_DAY, hour);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        return c;
+    }
+
+    /**
+     * Gets the day of a time, the way the server names it.
+     * @param time The time in milliseconds.
+     * @return The day, yyyy-MM-dd in UTC.
+     */
+
+    private static String dateOf(long time){
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+        df.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return df.format(new Date(time));
+    }
+
+    /**
+     * Gets the start of the day in UTC of today(6) plus some days.
+     * @param days The amount of days to add.
+     * @return The time in milliseconds.
+     */
+
+    private static long utcMidnight(int days) throws Exception {
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+        df.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return df.parse(dateOf(today(6).getTimeInMillis())).getTime()
+                + days * DAY;
+    }
+
+    /**
+     * Gets how many times a day has changed.
+     * @param date The day, yyyy-MM-dd.
+     * @return The version of the day.
+     */
+
+    private int versionOf(String date){
+        Integer version = versions.get(date);
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * Builds a schedule page the way the API does.
+     * @param date The day of the schedule, yyyy-MM-dd.
+     * @param size The amount of programs per page, 0 for no pagination.
+     * @param page The page to build.
+     * @return The page as XML.
+     */
+
+    private String schedule(String date, int size, int page)
+            throws Exception {
+        SimpleDateFormat in = new SimpleDateFormat("yyyy-MM-dd");
+        SimpleDateFormat out = new SimpleDateFormat(
+                "yyyy-MM-dd'T'HH:mm:ss'Z'");
+        in.setTimeZone(TimeZone.getTimeZone("UTC"));
+        out.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long dayStart = in.parse(date).getTime();
+        long length = DAY / PROGRAMS_PER_DAY;
+        if(apiDays){
+            dayStart -= HOUR;
+        }
+
+        StringBuilder sb = new StringBuilder("<sr>");
+        int first = 0;
+        int last = PROGRAMS_PER_DAY;
+        if(size > 0){
+            int pages = (PROGRAMS_PER_DAY + size - 1) / size;
+            sb.append("<pagination><page>").append(page)
+                    .append("</page><totalpages>").append(pages)
+                    .append("</totalpages></pagination>");
+            first = (page - 1) * size;
+            last = Math.min(first + size, PROGRAMS_PER_DAY);
+        }
+        sb.append("<schedule>");
+        int end = last;
+        if(apiDays && last == PROGRAMS_PER_DAY){
+            end++;
+        }
+        for(int i = first; i < end; i++){
+            int version = versionOf(date);
+            int number = i;
+            if(i == PROGRAMS_PER_DAY){
+                version = versionOf(dateOf(dayStart + HOUR + DAY));
+                number = 0;
+            }
+            sb.append("<scheduledepisode><title>Program ").append(number)
+                    .append(version > 0 ? " v" + version : "")
+                    .append("</title><starttimeutc>")
+                    .append(out.format(new Date(dayStart + i * length)))
+                    .append("</starttimeutc><endtimeutc>")
+                    .append(out.format(new Date(dayStart + (i+1) * length)))
+                    .append("</endtimeutc></scheduledepisode>");
+        }
+        return sb.append("</schedule></sr>").toString();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        requests = new AtomicInteger();
+        dates = Collections.synchronizedSet(new HashSet<String>());
+        pageCap = 0;
+        slowDate = "none";
+        failing = false;
+        apiDays = false;
+        brokenDate = "none";
+        versions = new ConcurrentHashMap<String, Integer>();
+        notModified = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                if(failing){
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+                if(exchange.getRequestURI().getQuery().contains(
+                        "date=" + slowDate)){
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                HashMap<String, String> query = new HashMap<String, String>();
+                for(String pair : exchange.getRequestURI().getQuery()
+                        .split("&")){
+                    String[] kv = pair.split("=", 2);
+                    query.put(kv[0], kv.length > 1 ? kv[1] : "");
+                }
+                int size = 10;
+                if("false".equals(query.get("pagination"))){
+                    size = 0;
+                }else if(query.containsKey("size")){
+                    size = Integer.parseInt(query.get("size"));
+                }
+                if(pageCap > 0 && (size == 0 || size > pageCap)){
+                    size = pageCap;
+                }
+                dates.add(query.get("date"));
+                int page = query.containsKey("page")
+                        ? Integer.parseInt(query.get("page")) : 1;
+                if(query.get("date").equals(brokenDate)){
+                    byte[] broken = "<sr></schedule>".getBytes(
+                            StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(200, broken.length);
+                    exchange.getResponseBody().write(broken);
+                    exchange.close();
+                    return;
+                }
+                String tag = "\"" + query.get("date") + "/" +
+                        versionOf(query.get("date")) + "/" + size + "/" +
+                        page + "\"";
+                if(apiDays && tag.equals(exchange.getRequestHeaders()
+                        .getFirst("If-None-Match"))){
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                if(apiDays){
+                    exchange.getResponseHeaders().set("ETag", tag);
+                }
+                byte[] body;
+                try {
+                    body = schedule(query.get("date"), size, page)
+                            .getBytes(StandardCharsets.UTF_8);
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        programsAddress = "http://localhost:" + server.getAddress().getPort()
+                + "/scheduledepisodes?";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int PROGRAMS_PER_DAY = 57;
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final long DAY = 24 * HOUR;
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private AtomicInteger requests;
+    private Set<String> dates;
+    private volatile int pageCap;
+    private volatile String slowDate;
+    private volatile boolean failing;
+    private volatile boolean apiDays;
+    private volatile String brokenDate;
+    private Map<String, Integer> versions;
+    private AtomicInteger notModified;
+    private String programsAddress;
+}
@@ -0,0 +1,154 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>SchedulePrefetcherTest</h1>
+ * <p>
+ * folder - Temporary folder for the cached responses.
+ * <p>
+ * server - Stub server that answers every request with the bundled
+ * program file, which has 6 pages.
+ * <p>
+ * requests - The amount of requests the server has answered.
+ * <p>
+ * days - The amount of days a schedule is loaded for right now.
+ * <p>
+ * m - Model with three channels, pointed at the stub server.
+ * <p>
+ * prefetcher - The prefetcher to test.
+ *
+ * @version 1.0
+ */
+public class SchedulePrefetcherTest {
+
+    @Test
+    public void startLoadsAllChannelsTest() throws Exception {
+        prefetcher.start();
+        awaitRequests(3 * days * 6);
+        assertEquals(0, prefetcher.getPending());
+    }
+
+    @Test
+    public void pauseHoldsBackWarmUpTest() throws Exception {
+        prefetcher.pause();
+        prefetcher.start();
+        awaitWaiting();
+        assertEquals(0, requests.get());
+        assertEquals(2, prefetcher.getPending());
+        prefetcher.resume();
+        awaitRequests(3 * days * 6);
+    }
+
+    @Test
+    public void cancelDropsWaitingChannelsTest() throws Exception {
+        prefetcher.pause();
+        prefetcher.start();
+        awaitWaiting();
+        prefetcher.cancel();
+        assertEquals(0, prefetcher.getPending());
+        prefetcher.resume();
+        awaitIdle();
+        /*Only the channel the worker had taken is loaded.*/
+        assertEquals(days * 6, requests.get());
+    }
+
+    /**
+     * Waits up to five seconds for the server to have answered the
+     * provided amount of requests.
+     * @param expected The amount of requests to wait for.
+     */
+
+    private void awaitRequests(int expected) throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while(requests.get() < expected && System.currentTimeMillis() < end){
+            Thread.sleep(20);
+        }
+        assertEquals(expected, requests.get());
+    }
+
+    /**
+     * Waits up to five seconds for the worker to be held back by the
+     * pause.
+     */
+
+    private void awaitWaiting() throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while(prefetcher.getWaiting() == 0 &&
+                System.currentTimeMillis() < end){
+            Thread.sleep(5);
+        }
+        assertEquals(1, prefetcher.getWaiting());
+    }
+
+    /**
+     * Waits up to five seconds for every worker to have stopped.
+     */
+
+    private void awaitIdle() throws Exception {
+        long end = System.currentTimeMillis() + 5000;
+        while(!prefetcher.isIdle() && System.currentTimeMillis() < end){
+            Thread.sleep(20);
+        }
+        assertTrue(prefetcher.isIdle());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        requests = new AtomicInteger();
+        days = RadioModel.scheduleDays(Calendar.getInstance()).size() - 1;
+        final byte[] body = Files.readAllBytes(
+                Paths.get("src/main/resources/p3programsedit.xml"));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        m = new RadioModel("unused", "http://localhost:" +
+                server.getAddress().getPort() + "/scheduledepisodes?",
+                new HttpCache(folder.newFolder()));
+        m.addChannels(Arrays.asList(new RadioChannel("P1", "132"),
+                new RadioChannel("P2", "163"), new RadioChannel("P3", "164")));
+        /*One thread keeps the channels from loading all at once.*/
+        prefetcher = new SchedulePrefetcher(m, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        prefetcher.cancel();
+        long end = System.currentTimeMillis() + 5000;
+        while(!prefetcher.isIdle() && System.currentTimeMillis() < end){
+            Thread.sleep(20);
+        }
+        server.stop(0);
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private AtomicInteger requests;
+    private int days;
+    private RadioModel m;
+    private SchedulePrefetcher prefetcher;
+}
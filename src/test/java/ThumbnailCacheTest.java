@@ -0,0 +1,93 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+
+/**
+ * <h1>ThumbnailCacheTest</h1>
+ * <p>
+ * thumbnails - The cache to test.
+ * <p>
+ * image - 100x80 image.
+ * <p>
+ * address - The address image is cached by.
+ *
+ * @version 1.0
+ */
+public class ThumbnailCacheTest {
+
+    @Test
+    public void scaleCachesByAddressAndSizeTest() throws Exception {
+        ImageIcon scaled = thumbnails.scale(address, image, 30, 31)
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(30, scaled.getIconWidth());
+        assertEquals(31, scaled.getIconHeight());
+        assertSame(scaled, thumbnails.getCached(address, 30, 31));
+        assertTrue(thumbnails.scale(address, image, 30, 31).isDone());
+        assertNull(thumbnails.getCached(address, 40, 31));
+    }
+
+    @Test
+    public void imageWithoutAddressIsNotCachedTest() throws Exception {
+        ImageIcon scaled = thumbnails.scale(null, image, 300, 310)
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(300, scaled.getIconWidth());
+        assertNull(thumbnails.getCached(null, 300, 310));
+        assertEquals(0, thumbnails.getCache().size());
+    }
+
+    @Test
+    public void imageWithoutDescriptionIsCachedTest() throws Exception {
+        ImageIcon unnamed = new ImageIcon(
+                new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        thumbnails.scale(address, unnamed, 20, 20).get(5, TimeUnit.SECONDS);
+        assertNotNull(thumbnails.getCached(address, 20, 20));
+    }
+
+    @Test
+    public void loadedImagesShareThumbnailTest() throws Exception {
+        URL file = new File("src/main/resources/default.png").toURI()
+                .toURL();
+        ImageLoader loader = new ImageLoader(new ImageCache(),
+                new IoExecutor(false, 1));
+        ImageIcon loaded = ImageLoader.await(loader.load(file));
+        assertNull(thumbnails.getCached(file, 30, 31));
+        ImageIcon scaled = thumbnails.scale(file, loaded, 30, 31)
+                .get(5, TimeUnit.SECONDS);
+        assertSame(scaled, thumbnails.getCached(file, 30, 31));
+        assertSame(scaled, thumbnails.scale(file, loaded, 30, 31)
+                .get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void scaleNowHalvesLargeImagesTest() throws Exception {
+        ImageIcon large = new ImageIcon(
+                new BufferedImage(1000, 20, BufferedImage.TYPE_INT_ARGB));
+        ImageIcon scaled = ThumbnailCache.scaleNow(large, 300, 310);
+        assertEquals(300, scaled.getIconWidth());
+        assertEquals(310, scaled.getIconHeight());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        thumbnails = new ThumbnailCache(new ImageCache(1024 * 1024),
+                new IoExecutor(false, 2));
+        image = new ImageIcon(
+                new BufferedImage(100, 80, BufferedImage.TYPE_INT_ARGB));
+        address = new URL("file:image.png");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        thumbnails = null;
+    }
+
+    private ThumbnailCache thumbnails;
+    private ImageIcon image;
+    private URL address;
+}
@@ -0,0 +1,138 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <h1>XMLDataParserEngineTest</h1>
+ * Checks that the DOM and the streaming engines give the same results on
+ * the bundled files.
+ * <p>
+ * dom - Parser using the DOM engine.
+ * <p>
+ * stax - Parser using the streaming engine.
+ * <p>
+ * channelsFile - File path used for channel-related tests.
+ * <p>
+ * programsFile - File path used for program-related tests.
+ *
+ * @version 1.0
+ */
+public class XMLDataParserEngineTest {
+
+    @Test
+    public void sameChannelPagesCountTest() throws Exception {
+        Assert.assertEquals(
+                dom.getChannelPagesCountFromSource(source(channelsFile)),
+                stax.getChannelPagesCountFromSource(source(channelsFile)));
+    }
+
+    @Test
+    public void sameTablePagesCountTest() throws Exception {
+        RadioChannel domChannel = new RadioChannel("P3", "164");
+        RadioChannel staxChannel = new RadioChannel("P3", "164");
+        dom.getChannelTableCountFromSource(source(programsFile), domChannel);
+        stax.getChannelTableCountFromSource(source(programsFile),
+                staxChannel);
+        Assert.assertEquals(domChannel.getTablePageCount(),
+                staxChannel.getTablePageCount());
+    }
+
+    @Test
+    public void sameRadioChannelsTest() throws Exception {
+        ArrayList<RadioChannel> domList = new ArrayList<RadioChannel>();
+        ArrayList<RadioChannel> staxList = new ArrayList<RadioChannel>();
+        dom.getRadioChannelsFromSource(source(channelsFile), domList);
+        stax.getRadioChannelsFromSource(source(channelsFile), staxList);
+        Assert.assertEquals(domList.size(), staxList.size());
+        for(int i = 0; i < domList.size(); i++){
+            Assert.assertEquals(domList.get(i).getName(),
+                    staxList.get(i).getName());
+            Assert.assertEquals(domList.get(i).getId(),
+                    staxList.get(i).getId());
+            Assert.assertEquals(domList.get(i).getDescription(),
+                    staxList.get(i).getDescription());
+        }
+    }
+
+    @Test
+    public void sameRadioProgramsTest() throws Exception {
+        RadioChannel domChannel = new RadioChannel("P3", "164");
+        RadioChannel staxChannel = new RadioChannel("P3", "164");
+        dom.getRadioProgramsFromSource(source(programsFile), domChannel);
+        stax.getRadioProgramsFromSource(source(programsFile), staxChannel);
+        Assert.assertEquals(domChannel.getPrograms().size(),
+                staxChannel.getPrograms().size());
+        for(int i = 0; i < domChannel.getPrograms().size(); i++){
+            RadioProgram d = domChannel.getPrograms().get(i);
+            RadioProgram s = staxChannel.getPrograms().get(i);
+            Assert.assertEquals(d.getName(), s.getName());
+            Assert.assertEquals(d.getDescription(), s.getDescription());
+            Assert.assertEquals(d.getStartTime(), s.getStartTime());
+            Assert.assertEquals(d.getEndTime(), s.getEndTime());
+        }
+    }
+
+    @Test
+    public void concurrentDocumentParsingTest() throws Exception {
+        final RadioChannel expected = new RadioChannel("P3", "164");
+        stax.getRadioProgramsFromSource(source(programsFile), expected);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<RadioChannel>> results =
+                    new ArrayList<Future<RadioChannel>>();
+            for(int i = 0; i < 16; i++){
+                results.add(pool.submit(new Callable<RadioChannel>() {
+                    public RadioChannel call() throws Exception {
+                        RadioChannel rc = new RadioChannel("P3", "164");
+                        dom.getRadioProgramsFromSource(source(programsFile),
+                                rc);
+                        return rc;
+                    }
+                }));
+            }
+            for(Future<RadioChannel> result : results){
+                RadioChannel rc = result.get();
+                Assert.assertEquals(expected.getPrograms().size(),
+                        rc.getPrograms().size());
+                for(int i = 0; i < rc.getPrograms().size(); i++){
+                    Assert.assertEquals(
+                            expected.getPrograms().get(i).getName(),
+                            rc.getPrograms().get(i).getName());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private InputSource source(String file) throws Exception {
+        return new InputSource(new FileInputStream(file));
+    }
+
+    @Before
+    public void setUp(){
+        dom = new XMLDataParser(XMLDataParser.Engine.DOM);
+        stax = new XMLDataParser(XMLDataParser.Engine.STAX);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dom = null;
+        stax = null;
+    }
+
+    private XMLDataParser dom;
+    private XMLDataParser stax;
+    private String channelsFile = "src/main/resources/channels.xml";
+    private String programsFile = "src/main/resources/p3programsedit.xml";
+}
@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.xml.sax.InputSource;
 import java.io.FileInputStream;
+import java.util.ArrayList;
 
 /**
  * <h1>XMLDataParserTest</h1>
@@ -62,6 +63,26 @@ public class XMLDataParserTest {
                 getRadioProgramNamed("Vaken").getName());
     }
 
+    @Test
+    public void parseRadioChannelsAndPagesCountTest() throws Exception {
+        ArrayList<RadioChannel> list = new ArrayList<RadioChannel>();
+        fis = new FileInputStream(channelsFile);
+        is = new InputSource(fis);
+        Assert.assertEquals("6",
+                parser.getRadioChannelsAndPagesCountFromSource(is, list));
+        Assert.assertEquals(10, list.size());
+    }
+
+    @Test
+    public void parseRadioProgramsAndTableCountTest() throws Exception {
+        fis = new FileInputStream(programsFile);
+        is = new InputSource(fis);
+        Assert.assertEquals("6",
+                parser.getRadioProgramsAndTableCountFromSource(is, rc));
+        Assert.assertEquals("6", rc.getTablePageCount());
+        Assert.assertEquals(10, rc.getPrograms().size());
+    }
+
     @Before
     public void setUp(){
         parser = new XMLDataParser();